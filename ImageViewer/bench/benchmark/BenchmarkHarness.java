@@ -0,0 +1,154 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs an operation over and over for a fixed time per iteration, after a few warmup iterations, and reports the
+ * average time per operation with its 99.9% confidence interval, the way JMH does in its throughput-per-time mode.
+ * Results are printed and appended to a CSV file together with the commit they were measured on, so runs on different
+ * commits can be compared with CompareResults.
+ */
+public class BenchmarkHarness {
+
+    /**
+     * An operation to measure.
+     */
+    public interface Operation {
+        void run() throws Exception;
+    }
+
+    /**
+     * Keeps results alive so the JIT can't remove the work that made them.
+     */
+    public static volatile Object blackhole;
+
+    private static final String csvHeader = "commit,date,java,cpus,benchmark,params,ns_per_op,error_ns,iterations";
+
+    private final int warmupIterations;
+    private final int iterations;
+    private final long iterationNanos;
+    private final Path resultsFile;
+    private final String commit;
+    private final List<String> filters;
+
+    /**
+     * @param quick       Whether to run fewer and shorter iterations, for a quick look rather than numbers to compare.
+     * @param resultsFile The CSV file to append the results to. (null to only print them.)
+     * @param filters     Only benchmarks whose name contains one of these run. (Empty to run all.)
+     */
+    public BenchmarkHarness(boolean quick, Path resultsFile, List<String> filters) {
+        warmupIterations = quick ? 1 : 3;
+        iterations = quick ? 3 : 5;
+        iterationNanos = TimeUnit.MILLISECONDS.toNanos(quick ? 200 : 1000);
+        this.resultsFile = resultsFile;
+        this.filters = filters;
+        commit = System.getProperty("bench.commit", readCommit());
+        System.out.printf("commit %s, java %s, %d cpus, %d x %d ms after %d warmup%n", commit, System.getProperty("java.version"),
+                Runtime.getRuntime().availableProcessors(), iterations, TimeUnit.NANOSECONDS.toMillis(iterationNanos), warmupIterations);
+        System.out.printf("%-40s %-28s %14s %12s%n", "benchmark", "params", "ns/op", "error");
+    }
+
+    /**
+     * Does a benchmark pass the name filters?
+     *
+     * @param benchmark The name of the benchmark.
+     * @return Returns true if yes otherwise false.
+     */
+    public boolean isSelected(String benchmark) {
+        return filters.isEmpty() || filters.stream().anyMatch(benchmark::contains);
+    }
+
+    /**
+     * Measure an operation, if the benchmark is selected.
+     *
+     * @param benchmark The name of the benchmark.
+     * @param params    The parameters it's run with, for example the slide count.
+     * @param operation The operation to measure.
+     */
+    public void measure(String benchmark, String params, Operation operation) throws Exception {
+        if (!isSelected(benchmark)) return;
+
+        for (int i = 0; i < warmupIterations; i++)
+            runIteration(operation);
+
+        var samples = new double[iterations];
+        for (int i = 0; i < iterations; i++)
+            samples[i] = runIteration(operation);
+
+        var mean = 0.0;
+        for (var sample : samples) mean += sample / samples.length;
+        var variance = 0.0;
+        for (var sample : samples) variance += (sample - mean) * (sample - mean) / Math.max(1, samples.length - 1);
+        var error = studentT999(samples.length - 1) * Math.sqrt(variance / samples.length);
+
+        System.out.printf("%-40s %-28s %14.1f %12.1f%n", benchmark, params, mean, error);
+        append(benchmark, params, mean, error);
+    }
+
+    private double runIteration(Operation operation) throws Exception {
+        var operations = 0L;
+        var batch = 1L;
+        var start = System.nanoTime();
+        var elapsed = 0L;
+        while (elapsed < iterationNanos) {
+            for (long i = 0; i < batch; i++)
+                operation.run();
+            operations += batch;
+            elapsed = System.nanoTime() - start;
+            // Read the clock less often for fast operations, so the clock isn't what's measured.
+            if (elapsed < iterationNanos / 100) batch *= 2;
+        }
+        return (double) elapsed / operations;
+    }
+
+    /**
+     * Print that a benchmark was skipped.
+     *
+     * @param benchmark The name of the benchmark.
+     * @param reason    Why it was skipped.
+     */
+    public void skip(String benchmark, String reason) {
+        if (isSelected(benchmark))
+            System.out.printf("%-40s skipped: %s%n", benchmark, reason);
+    }
+
+    private void append(String benchmark, String params, double mean, double error) throws IOException {
+        if (resultsFile == null) return;
+
+        var lines = new ArrayList<String>();
+        if (Files.notExists(resultsFile)) lines.add(csvHeader);
+        lines.add(String.format(Locale.ROOT, "%s,%s,%s,%d,%s,%s,%.1f,%.1f,%d", commit, LocalDate.now(), System.getProperty("java.version"),
+                Runtime.getRuntime().availableProcessors(), benchmark, params, mean, error, iterations));
+        Files.write(resultsFile, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static String readCommit() {
+        try {
+            var process = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+            var output = new String(process.getInputStream().readAllBytes()).trim();
+            return process.waitFor() == 0 && !output.isEmpty() ? output : "unknown";
+        } catch (IOException e) {
+            return "unknown";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "unknown";
+        }
+    }
+
+    /**
+     * The two-sided 99.9% quantile of Student's t distribution.
+     */
+    private static double studentT999(int degreesOfFreedom) {
+        double[] table = {636.62, 31.60, 12.92, 8.61, 6.87, 5.96, 5.41, 5.04, 4.78, 4.59};
+        if (degreesOfFreedom < 1) return Double.NaN;
+        return degreesOfFreedom <= table.length ? table[degreesOfFreedom - 1] : 3.29;
+    }
+}
@@ -0,0 +1,58 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two runs of EngineBenchmark. For every benchmark in both it prints the time per operation of each run, the
+ * ratio between them and whether the difference is larger than the error of the two runs combined. If a file holds
+ * several runs of a benchmark, the last one counts. The files may be the same, to compare two commits in one file.
+ * <p>
+ * Usage: CompareResults base.csv new.csv [base-commit new-commit]
+ */
+public class CompareResults {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 && args.length != 4) {
+            System.out.println("Usage: CompareResults base.csv new.csv [base-commit new-commit]");
+            return;
+        }
+
+        var base = read(Path.of(args[0]), args.length == 4 ? args[2] : null);
+        var current = read(Path.of(args[1]), args.length == 4 ? args[3] : null);
+
+        System.out.printf("%-40s %-28s %14s %14s %8s%n", "benchmark", "params", "base ns/op", "new ns/op", "ratio");
+        for (var entry : base.entrySet()) {
+            var other = current.get(entry.getKey());
+            if (other == null) continue;
+
+            var before = entry.getValue();
+            var ratio = other[0] / before[0];
+            var significant = Math.abs(other[0] - before[0]) > before[1] + other[1];
+            var key = entry.getKey().split(",", 2);
+            System.out.printf("%-40s %-28s %14.1f %14.1f %7.2fx%s%n", key[0], key[1], before[0], other[0], ratio, significant ? "" : " (within error)");
+        }
+    }
+
+    /**
+     * Read the results of a CSV file, keyed by benchmark and parameters.
+     *
+     * @param file   The CSV file.
+     * @param commit Only read the results of this commit. (null for all.)
+     * @return Returns the mean and error in ns per operation of each benchmark.
+     */
+    private static Map<String, double[]> read(Path file, String commit) throws IOException {
+        var results = new LinkedHashMap<String, double[]>();
+        for (var line : Files.readAllLines(file)) {
+            var columns = line.split(",");
+            if (columns.length < 9 || columns[0].equals("commit")) continue;
+            if (commit != null && !columns[0].startsWith(commit)) continue;
+
+            results.put(columns[4] + "," + columns[5], new double[]{Double.parseDouble(columns[6]), Double.parseDouble(columns[7])});
+        }
+        return results;
+    }
+}
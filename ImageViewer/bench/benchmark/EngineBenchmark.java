@@ -0,0 +1,211 @@
+package benchmark;
+
+import be.Slide;
+import be.SlideshowInstance;
+import bll.ContentIndex;
+import bll.ImageCache;
+import bll.ImageDecoder;
+import bll.Logger;
+import bll.Metrics;
+import bll.SlideshowInstanceManager;
+import bll.SlideshowManager;
+import javafx.application.Platform;
+import javafx.scene.image.WritableImage;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The benchmark suite of the slideshow engine: decoding slides of each format and size with each decoder backend,
+ * hashing their files for content sharing, moving through slideshows of 1k to 1M slides, rotating between slideshow
+ * instances, and logging and metrics. The images are generated by FixtureImages, so it runs offline. Results are
+ * appended to a CSV file with the commit they were measured on, compare two of them with CompareResults.
+ * <p>
+ * Usage: EngineBenchmark [--quick] [--results file.csv] [benchmark name filters...]
+ * <p>
+ * The JavaFX decoder backend needs the JavaFX toolkit, it is skipped if the toolkit can't start. (Run it headless with
+ * the Monocle platform, see bench/run.sh.)
+ */
+public class EngineBenchmark {
+
+    private static final double viewportWidth = 1920;
+    private static final double viewportHeight = 1080;
+    private static final int[] slideCounts = {1_000, 10_000, 100_000, 1_000_000};
+    private static final int[] instanceCounts = {2, 16, 128};
+
+    public static void main(String[] args) throws Exception {
+        var quick = false;
+        Path results = Path.of("bench-results.csv");
+        var filters = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--quick")) quick = true;
+            else if (args[i].equals("--results")) results = Path.of(args[++i]);
+            else filters.add(args[i]);
+        }
+
+        // Each decode operation decodes the same file again, don't let it get the previous operation's image.
+        System.setProperty("imageviewer.dedupe", "false");
+
+        var harness = new BenchmarkHarness(quick, results, filters);
+        var javaFx = startJavaFx();
+
+        decode(harness, javaFx);
+        contentHash(harness);
+        slideshow(harness);
+        rotation(harness);
+        instrumentation(harness);
+
+        if (javaFx) Platform.exit();
+        System.exit(0);
+    }
+
+    private static void decode(BenchmarkHarness harness, boolean javaFx) throws Exception {
+        var folder = FixtureImages.getDefaultFolder();
+        var backend = ImageDecoder.getBackend();
+        try {
+            for (var backendName : new String[]{"imageio", "javafx"}) {
+                var name = "decode." + backendName;
+                if (!harness.isSelected(name)) continue;
+                if (backendName.equals("javafx") && !javaFx) {
+                    harness.skip(name, "the JavaFX toolkit couldn't start");
+                    continue;
+                }
+
+                ImageDecoder.setBackend(backendName.equals("javafx") ? ImageDecoder.javaFxBackend : ImageDecoder.imageIoBackend);
+                for (var format : FixtureImages.formats) {
+                    for (var size : FixtureImages.sizes) {
+                        var file = FixtureImages.get(folder, format, size[0], size[1]).toString();
+                        harness.measure(name, String.format("%s %dx%d", format, size[0], size[1]), () -> {
+                            // A new slide and an empty cache every time, so each operation is a full decode.
+                            ImageCache.getInstance().clear();
+                            BenchmarkHarness.blackhole = new Slide(file).loadImage(viewportWidth, viewportHeight).join();
+                        });
+                    }
+                }
+            }
+        } finally {
+            ImageDecoder.setBackend(backend);
+            ImageCache.getInstance().clear();
+        }
+    }
+
+    private static void contentHash(BenchmarkHarness harness) throws Exception {
+        if (!harness.isSelected("content.hash")) return;
+
+        var folder = FixtureImages.getDefaultFolder();
+        var contentIndex = new ContentIndex(true);
+        for (var format : FixtureImages.formats) {
+            for (var size : FixtureImages.sizes) {
+                var file = FixtureImages.get(folder, format, size[0], size[1]).toString();
+                var version = new long[1];
+                // A new modification time every time, so each operation hashes the whole file.
+                harness.measure("content.hash", String.format("%s %dx%d", format, size[0], size[1]),
+                        () -> BenchmarkHarness.blackhole = contentIndex.getContentId(file, 0, version[0]++));
+            }
+        }
+    }
+
+    private static void slideshow(BenchmarkHarness harness) throws Exception {
+        // Decoding is measured above, here it should cost next to nothing so the slideshow's own bookkeeping is measured.
+        var backend = ImageDecoder.getBackend();
+        var image = new WritableImage(1, 1);
+        ImageDecoder.setBackend((file, width, height) -> image);
+        try {
+            for (var slides : slideCounts) {
+                if (!harness.isSelected("slideshow.next") && !harness.isSelected("slideshow.previous") && !harness.isSelected("slideshow.getSlideByPath"))
+                    return;
+
+                var manager = new SlideshowManager();
+                var paths = new String[slides];
+                for (int i = 0; i < slides; i++) {
+                    paths[i] = String.format("/bench/folder%03d/slide%07d.jpg", i % 1000, i);
+                    manager.getSlides().add(paths[i], 1_000_000 + i, 1_600_000_000_000L + i, 4000, 3000);
+                }
+
+                var params = "slides=" + slides;
+                harness.measure("slideshow.next", params, () -> BenchmarkHarness.blackhole = manager.next());
+                harness.measure("slideshow.previous", params, () -> BenchmarkHarness.blackhole = manager.previous());
+                var random = new Random(42);
+                harness.measure("slideshow.getSlideByPath", params, () -> BenchmarkHarness.blackhole = manager.getSlide(paths[random.nextInt(slides)]));
+
+                manager.getPrefetcher().cancel();
+                ImageCache.getInstance().clear();
+            }
+        } finally {
+            ImageDecoder.setBackend(backend);
+        }
+    }
+
+    private static void rotation(BenchmarkHarness harness) throws Exception {
+        if (!harness.isSelected("rotation")) return;
+
+        var backend = ImageDecoder.getBackend();
+        var image = new WritableImage(1, 1);
+        ImageDecoder.setBackend((file, width, height) -> image);
+        try {
+            for (var instances : instanceCounts) {
+                // Not started, the transitions are driven here instead of by the rotation deadline.
+                var rotation = new SlideshowInstanceManager();
+                var managers = new ArrayList<SlideshowManager>();
+                for (int i = 0; i < instances; i++) {
+                    var manager = new SlideshowManager();
+                    for (int j = 0; j < 10; j++)
+                        manager.getSlides().add(String.format("/bench/instance%d/slide%d.jpg", i, j), 1_000_000, 1_600_000_000_000L, 4000, 3000);
+                    manager.setSlideShowDelay(5);
+                    manager.start();
+                    managers.add(manager);
+
+                    rotation.addControllerInstance(new SlideshowInstance(i + 1, manager));
+                }
+
+                // One transition: pause the others and start the next instance, as the rotation deadline does.
+                harness.measure("rotation.transition", "instances=" + instances, () -> {
+                    var next = rotation.next();
+                    next.setActive(true);
+                    if (rotation.isAnyOtherSlideshowPlayingThan(next))
+                        rotation.pauseAllExcept(next.getId());
+                    next.getSlideshowManager().unpause();
+                });
+
+                for (var manager : managers) manager.stop();
+            }
+        } finally {
+            ImageDecoder.setBackend(backend);
+            ImageCache.getInstance().clear();
+        }
+    }
+
+    private static void instrumentation(BenchmarkHarness harness) throws Exception {
+        // Log to nowhere, the cost of the console isn't what's measured.
+        var logger = new Logger(new PrintStream(OutputStream.nullOutputStream()), Logger.Level.INFO);
+        var metrics = new Metrics();
+        var counter = metrics.counter("bench.counter");
+        var histogram = metrics.histogram("bench.histogram");
+        var value = new long[1];
+
+        harness.measure("logger.disabled", "debug", () -> logger.debug("Instance: %s is currently active.", "a"));
+        harness.measure("logger.enabled", "info", () -> logger.info("Instance: %s is currently active.", "a"));
+        harness.measure("metrics.counter", "increment", counter::increment);
+        harness.measure("metrics.histogram", "record", () -> histogram.record(value[0]++ & 0xFFFFF));
+    }
+
+    private static boolean startJavaFx() {
+        try {
+            var started = new CountDownLatch(1);
+            Platform.startup(started::countDown);
+            Platform.setImplicitExit(false);
+            return started.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (RuntimeException | LinkageError e) {
+            System.out.printf("JavaFX toolkit unavailable: %s%n", e);
+            return false;
+        }
+    }
+}
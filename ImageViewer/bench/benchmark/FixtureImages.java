@@ -0,0 +1,90 @@
+package benchmark;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates the images the benchmarks decode, so they run offline and every run decodes the same pixels. The images are
+ * a photo-like mix of gradients, shapes and noise, and are only written once per folder.
+ */
+public class FixtureImages {
+
+    /**
+     * The formats fixtures are generated in, as ImageIO format names and file extensions.
+     */
+    public static final String[] formats = {"png", "jpg", "gif", "bmp"};
+
+    /**
+     * The sizes fixtures are generated at: VGA, full HD and a 12 megapixel camera photo.
+     */
+    public static final int[][] sizes = {{640, 480}, {1920, 1080}, {4000, 3000}};
+
+    private FixtureImages() {
+
+    }
+
+    /**
+     * Get a fixture image, generating it if the folder doesn't have it yet.
+     *
+     * @param folder The folder to keep the fixtures in.
+     * @param format The format. (One of formats.)
+     * @param width  The width in pixels.
+     * @param height The height in pixels.
+     * @return Returns the path of the image file.
+     */
+    public static Path get(Path folder, String format, int width, int height) throws IOException {
+        var file = folder.resolve(String.format("fixture-%dx%d.%s", width, height, format));
+        if (Files.exists(file)) return file;
+
+        Files.createDirectories(folder);
+        var temporary = folder.resolve(file.getFileName() + ".tmp");
+        if (!ImageIO.write(render(width, height), format.equals("jpg") ? "jpeg" : format, temporary.toFile()))
+            throw new IOException("No ImageIO writer for " + format);
+        Files.move(temporary, file);
+        return file;
+    }
+
+    /**
+     * Get the folder fixtures are kept in unless the bench.fixtures system property says otherwise.
+     *
+     * @return Returns the path of the folder.
+     */
+    public static Path getDefaultFolder() {
+        return Path.of(System.getProperty("bench.fixtures", System.getProperty("java.io.tmpdir") + "/imageviewer-bench-fixtures"));
+    }
+
+    private static BufferedImage render(int width, int height) {
+        var random = new Random(width * 31L + height);
+        var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+        var pixels = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                var r = 255 * x / width;
+                var g = 255 * y / height;
+                var b = 128 + (int) (60 * Math.sin((x + y) / 40.0));
+                var noise = random.nextInt(17) - 8;
+                pixels[x] = clamp(r + noise) << 16 | clamp(g + noise) << 8 | clamp(b + noise);
+            }
+            image.setRGB(0, y, width, 1, pixels, 0, width);
+        }
+
+        var graphics = image.createGraphics();
+        for (int i = 0; i < 40; i++) {
+            graphics.setColor(new Color(random.nextInt(0x1000000)));
+            var size = random.nextInt(Math.max(1, width / 6));
+            graphics.fillOval(random.nextInt(width), random.nextInt(height), size, size);
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
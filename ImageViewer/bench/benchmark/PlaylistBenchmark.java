@@ -0,0 +1,101 @@
+package benchmark;
+
+import be.Playlist;
+import be.Slide;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the old ArrayList of slides, searched front to back, with the Playlist by heap held per slide, lookup by
+ * path and removal by path.
+ * <p>
+ * Usage: PlaylistBenchmark [slides...] (default 1000 10000 100000 1000000)
+ */
+public class PlaylistBenchmark {
+
+    private static final int lookups = 2000;
+    private static final int removals = 200;
+
+    public static void main(String[] args) {
+        var slideCounts = args.length > 0 ? args : new String[]{"1000", "10000", "100000", "1000000"};
+
+        System.out.println("store       slides  heap-MB  bytes/slide  lookup-us  remove-us");
+        for (var arg : slideCounts) {
+            var slides = Integer.parseInt(arg);
+            runList(slides);
+            runPlaylist(slides);
+        }
+    }
+
+    private static void runList(int slides) {
+        var heapBefore = usedHeap();
+        var list = new ArrayList<Slide>();
+        for (int i = 0; i < slides; i++)
+            list.add(new Slide(pathOf(i), 1_000_000 + i, 1_600_000_000_000L + i, 4000, 3000));
+        var heap = usedHeap() - heapBefore;
+
+        var random = new Random(42);
+        var start = System.nanoTime();
+        var found = 0;
+        for (int i = 0; i < lookups; i++)
+            if (find(list, pathOf(random.nextInt(slides))) != null) found++;
+        var lookupNanos = (System.nanoTime() - start) / lookups;
+
+        start = System.nanoTime();
+        for (int i = 0; i < removals; i++) {
+            var slide = find(list, pathOf(random.nextInt(slides)));
+            if (slide != null) list.remove(slide);
+        }
+        var removeNanos = (System.nanoTime() - start) / removals;
+
+        print("ArrayList", slides, heap, lookupNanos, removeNanos, found + list.size());
+    }
+
+    private static void runPlaylist(int slides) {
+        var heapBefore = usedHeap();
+        var playlist = new Playlist();
+        for (int i = 0; i < slides; i++)
+            playlist.add(pathOf(i), 1_000_000 + i, 1_600_000_000_000L + i, 4000, 3000);
+        var heap = usedHeap() - heapBefore;
+
+        var random = new Random(42);
+        var start = System.nanoTime();
+        var found = 0;
+        for (int i = 0; i < lookups; i++)
+            if (playlist.get(pathOf(random.nextInt(slides))) != null) found++;
+        var lookupNanos = (System.nanoTime() - start) / lookups;
+
+        start = System.nanoTime();
+        for (int i = 0; i < removals; i++)
+            playlist.remove(pathOf(random.nextInt(slides)));
+        var removeNanos = (System.nanoTime() - start) / removals;
+
+        print("Playlist", slides, heap, lookupNanos, removeNanos, found + playlist.size());
+    }
+
+    /**
+     * How SlideshowManager.getSlide(String) used to find a slide.
+     */
+    private static Slide find(List<Slide> slides, String path) {
+        for (var slide : slides)
+            if (slide.getFilePath().equals(path)) return slide;
+        return null;
+    }
+
+    private static String pathOf(int i) {
+        return String.format("/photos/%04d/IMG_%07d.jpg", i / 1000, i);
+    }
+
+    private static void print(String store, int slides, long heap, long lookupNanos, long removeNanos, int checksum) {
+        System.out.printf("%-10s %8d %8.1f %12d %10.1f %10.1f  (%d)%n", store, slides, heap / 1e6, heap / slides,
+                lookupNanos / 1e3, removeNanos / 1e3, checksum);
+    }
+
+    private static long usedHeap() {
+        var runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
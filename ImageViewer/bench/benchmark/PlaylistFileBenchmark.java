@@ -0,0 +1,54 @@
+package benchmark;
+
+import be.Playlist;
+import bll.PlaylistFile;
+
+import java.nio.file.Files;
+
+/**
+ * Measures how long saving and opening a playlist file takes and how big the file gets. The slides don't need to
+ * exist, opening a playlist doesn't touch them.
+ * <p>
+ * Usage: PlaylistFileBenchmark [slides...] (default 10000 100000 500000)
+ */
+public class PlaylistFileBenchmark {
+
+    private static final int runs = 5;
+
+    public static void main(String[] args) throws Exception {
+        var slideCounts = args.length > 0 ? args : new String[]{"10000", "100000", "500000"};
+        var file = Files.createTempFile("benchmark", "." + PlaylistFile.fileExtension);
+
+        System.out.println("  slides  file-MB  bytes/slide  save-ms  open-ms (best of " + runs + ")");
+        try {
+            for (var arg : slideCounts) {
+                var slides = Integer.parseInt(arg);
+                var playlist = new Playlist();
+                for (int i = 0; i < slides; i++)
+                    playlist.add(String.format("/photos/%04d/IMG_%07d.jpg", i / 1000, i), 3_000_000 + i, 1_600_000_000_000L + i, 6000, 4000);
+
+                var saveNanos = Long.MAX_VALUE;
+                var openNanos = Long.MAX_VALUE;
+                for (int run = 0; run < runs; run++) {
+                    var start = System.nanoTime();
+                    PlaylistFile.save(file, playlist, slides / 2, 2.5);
+                    saveNanos = Math.min(saveNanos, System.nanoTime() - start);
+
+                    var opened = new Playlist();
+                    start = System.nanoTime();
+                    var playlistFile = PlaylistFile.open(file, opened);
+                    openNanos = Math.min(openNanos, System.nanoTime() - start);
+
+                    if (opened.size() != slides || playlistFile.getCurrentSlideIndex() != slides / 2
+                            || !opened.getFilePath(slides - 1).equals(playlist.getFilePath(slides - 1)))
+                        throw new IllegalStateException("The opened playlist doesn't match the saved one");
+                }
+
+                var size = Files.size(file);
+                System.out.printf("%8d %8.1f %12d %8.1f %8.1f%n", slides, size / 1e6, size / slides, saveNanos / 1e6, openNanos / 1e6);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package benchmark;
+
+import bll.SlideshowScheduler;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the old one-polling-thread-per-slideshow loop with the shared SlideshowScheduler by thread count and CPU
+ * time used while hundreds of slideshows sit idle between slides.
+ * <p>
+ * Usage: SchedulerBenchmark [instances...] (default 100 250 500)
+ */
+public class SchedulerBenchmark {
+
+    // Slideshows wait this long between slides, so the measured window is (almost) all idle time.
+    private static final long slideDelayMillis = 5000;
+    private static final long measureMillis = 10000;
+
+    private static final AtomicLong advances = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        var instanceCounts = args.length > 0 ? args : new String[]{"100", "250", "500"};
+
+        System.out.println("mode       instances  paused  threads  cpu-ms  advances");
+        for (var arg : instanceCounts) {
+            var instances = Integer.parseInt(arg);
+            run("polling", instances, SchedulerBenchmark::startPolling);
+            run("scheduler", instances, SchedulerBenchmark::startScheduled);
+        }
+    }
+
+    private static void run(String mode, int instances, Starter starter) throws Exception {
+        // Half the slideshows play, the other half are paused like inactive instances are.
+        var paused = instances / 2;
+        var threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+
+        advances.set(0);
+        var handle = starter.start(instances, paused);
+        Thread.sleep(1000);
+
+        var cpuBefore = getProcessCpuTime();
+        Thread.sleep(measureMillis);
+        var cpuMillis = TimeUnit.NANOSECONDS.toMillis(getProcessCpuTime() - cpuBefore);
+        var threads = ManagementFactory.getThreadMXBean().getThreadCount() - threadsBefore;
+
+        handle.stop();
+        System.out.printf("%-10s %9d %7d %8d %7d %9d%n", mode, instances, paused, threads, cpuMillis, advances.get());
+        Thread.sleep(500);
+    }
+
+    /**
+     * The loop SlideshowManager used to run: one thread per slideshow waking up every second, or every half second when
+     * paused.
+     */
+    private static Handle startPolling(int instances, int paused) {
+        List<ExecutorService> executors = new ArrayList<>();
+        for (int i = 0; i < instances; i++) {
+            var isPaused = i < paused;
+            var executor = Executors.newSingleThreadExecutor();
+            executor.submit(() -> {
+                var elapsedMillis = 0L;
+                while (!Thread.currentThread().isInterrupted()) {
+                    try {
+                        if (isPaused) {
+                            Thread.sleep(500);
+                            continue;
+                        }
+                        if (elapsedMillis >= slideDelayMillis) {
+                            elapsedMillis = 0;
+                            advances.incrementAndGet();
+                        }
+                        Thread.sleep(1000);
+                        elapsedMillis += 1000;
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            executors.add(executor);
+        }
+        return () -> executors.forEach(ExecutorService::shutdownNow);
+    }
+
+    /**
+     * What SlideshowManager does now: an advance is scheduled on the shared scheduler only when it is due, and paused
+     * slideshows have nothing scheduled.
+     */
+    private static Handle startScheduled(int instances, int paused) {
+        var scheduler = new SlideshowScheduler();
+        List<ScheduledAdvance> slideshows = new ArrayList<>();
+        for (int i = paused; i < instances; i++) {
+            var slideshow = new ScheduledAdvance(scheduler);
+            slideshow.schedule();
+            slideshows.add(slideshow);
+        }
+        return () -> slideshows.forEach(ScheduledAdvance::cancel);
+    }
+
+    private static long getProcessCpuTime() {
+        var os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean)
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        return -1;
+    }
+
+    private interface Starter {
+        Handle start(int instances, int paused);
+    }
+
+    private interface Handle {
+        void stop();
+    }
+
+    private static class ScheduledAdvance {
+        private final SlideshowScheduler scheduler;
+        private volatile ScheduledFuture<?> future;
+        private volatile boolean cancelled;
+
+        ScheduledAdvance(SlideshowScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        void schedule() {
+            if (!cancelled) future = scheduler.schedule(this::advance, slideDelayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        void advance() {
+            advances.incrementAndGet();
+            schedule();
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (future != null) future.cancel(false);
+        }
+    }
+}
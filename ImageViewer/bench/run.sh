@@ -0,0 +1,27 @@
+#!/bin/sh
+# Compiles the image viewer with the benchmarks and runs the engine benchmark suite, headless if the Monocle jar is given.
+#
+# Usage: JAVAFX_LIB=/path/to/javafx-sdk/lib [MONOCLE_JAR=/path/to/monocle.jar] bench/run.sh [EngineBenchmark arguments...]
+#
+# Run it on two commits and compare the runs with:
+#   java -cp "$OUT" benchmark.CompareResults bench-results.csv bench-results.csv <base-commit> <new-commit>
+set -e
+cd "$(dirname "$0")/.."
+
+if [ -z "$JAVAFX_LIB" ]; then
+    echo "Set JAVAFX_LIB to the lib folder of a JavaFX SDK." >&2
+    exit 1
+fi
+
+OUT=${OUT:-build/bench}
+rm -rf "$OUT" && mkdir -p "$OUT"
+javac --release 16 -nowarn -d "$OUT" -cp "$JAVAFX_LIB/*" $(find src bench -name '*.java')
+
+CLASSPATH="$OUT:$JAVAFX_LIB/*"
+HEADLESS=""
+if [ -n "$MONOCLE_JAR" ]; then
+    CLASSPATH="$CLASSPATH:$MONOCLE_JAR"
+    HEADLESS="-Dglass.platform=Monocle -Dmonocle.platform=Headless -Dprism.order=sw"
+fi
+
+exec java -Xmx2g $HEADLESS -cp "$CLASSPATH" benchmark.EngineBenchmark "$@"
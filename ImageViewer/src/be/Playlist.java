@@ -0,0 +1,486 @@
+package be;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * The ordered slides of a slideshow. Per-slide metadata is kept in primitive columns rather than in one object per
+ * slide, paths are unique and looking a slide up or removing it by path takes constant time.
+ * <p>
+ * Slides are stored in slots that are appended to. Removing a slide only marks its slot as removed, a Fenwick tree over
+ * the live slots maps list positions to slots in O(log n), and removed slots are compacted away once they make up half
+ * the slots. Slide handles are created on demand; the most recently used ones are kept so their decode state survives.
+ */
+public class Playlist extends AbstractList<Slide> implements RandomAccess {
+
+    /**
+     * The amount of slide handles kept around.
+     */
+    public static final int maxSlideHandles = 1024;
+
+    private static final int emptySlot = 0;
+    private static final int removedSlot = -1;
+    private static final int minCapacity = 16;
+
+    // Columns, indexed by slot.
+    private String[] paths = new String[minCapacity];
+    private long[] fileSizes = new long[minCapacity];
+    private long[] lastModifiedTimes = new long[minCapacity];
+    private int[] sourceWidths = new int[minCapacity];
+    private int[] sourceHeights = new int[minCapacity];
+
+    // Fenwick tree over the slots, 1 for a live slot and 0 for a removed one.
+    private int[] liveTree = new int[minCapacity + 1];
+    private int slotCount;
+    private int liveCount;
+
+    // Open addressing path index. Holds slot + 1, emptySlot or removedSlot.
+    private int[] pathIndex = new int[minCapacity * 2];
+    private int pathIndexUsed;
+
+    private final LinkedHashMap<Integer, Slide> slideHandles = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Slide> eldest) {
+            if (size() <= maxSlideHandles) return false;
+            storeSourceSize(eldest.getKey(), eldest.getValue());
+            return true;
+        }
+    };
+
+    /**
+     * Add a slide to the end of the playlist.
+     *
+     * @param filePath     The file path of the image.
+     * @param fileSize     The size of the image file in bytes.
+     * @param lastModified The last modification time of the image file in milliseconds since the epoch.
+     * @param sourceWidth  The width of the image. (0 if unknown.)
+     * @param sourceHeight The height of the image. (0 if unknown.)
+     * @return Returns false if a slide with this path is already in the playlist.
+     */
+    public synchronized boolean add(String filePath, long fileSize, long lastModified, int sourceWidth, int sourceHeight) {
+        return addNormalized(Slide.normalizePath(filePath), fileSize, lastModified, sourceWidth, sourceHeight) >= 0;
+    }
+
+    /**
+     * Add a slide to the end of the playlist.
+     *
+     * @param slide The slide to add.
+     * @return Returns false if a slide with this path is already in the playlist.
+     */
+    @Override
+    public synchronized boolean add(Slide slide) {
+        var slot = addNormalized(slide.getFilePath(), slide.getFileSize(), slide.getLastModified(),
+                (int) slide.getSourceWidth(), (int) slide.getSourceHeight());
+        if (slot < 0) return false;
+
+        slideHandles.put(slot, slide);
+        return true;
+    }
+
+    private int addNormalized(String filePath, long fileSize, long lastModified, int sourceWidth, int sourceHeight) {
+        if (findSlot(filePath) >= 0) return -1;
+
+        ensureCapacity(slotCount + 1);
+        var slot = slotCount++;
+        paths[slot] = filePath;
+        fileSizes[slot] = fileSize;
+        lastModifiedTimes[slot] = lastModified;
+        sourceWidths[slot] = sourceWidth;
+        sourceHeights[slot] = sourceHeight;
+        treeAdd(slot, 1);
+        liveCount++;
+        insertIntoIndex(filePath, slot);
+        modCount++;
+        return slot;
+    }
+
+    /**
+     * Get the slide at a position.
+     *
+     * @param index The position of the slide.
+     * @return Returns the slide handle.
+     */
+    @Override
+    public synchronized Slide get(int index) {
+        return getSlideAtSlot(slotOf(index));
+    }
+
+    /**
+     * Get the slide with a file path.
+     *
+     * @param filePath The file path of the slide.
+     * @return Returns null if the playlist has no slide with this path.
+     */
+    public synchronized Slide get(String filePath) {
+        var slot = findSlot(Slide.normalizePath(filePath));
+        return slot >= 0 ? getSlideAtSlot(slot) : null;
+    }
+
+    /**
+     * Is a slide with a file path in the playlist?
+     *
+     * @param filePath The file path of the slide.
+     * @return Returns true if yes otherwise false.
+     */
+    public synchronized boolean contains(String filePath) {
+        return findSlot(Slide.normalizePath(filePath)) >= 0;
+    }
+
+    @Override
+    public synchronized boolean contains(Object o) {
+        return o instanceof Slide && findSlot(((Slide) o).getFilePath()) >= 0;
+    }
+
+    /**
+     * Get the position of the slide with a file path.
+     *
+     * @param filePath The file path of the slide.
+     * @return Returns -1 if the playlist has no slide with this path.
+     */
+    public synchronized int indexOf(String filePath) {
+        var slot = findSlot(Slide.normalizePath(filePath));
+        return slot >= 0 ? treePrefixSum(slot + 1) - 1 : -1;
+    }
+
+    @Override
+    public synchronized int indexOf(Object o) {
+        return o instanceof Slide ? indexOf(((Slide) o).getFilePath()) : -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        // Paths are unique.
+        return indexOf(o);
+    }
+
+    /**
+     * Remove the slide with a file path.
+     *
+     * @param filePath The file path of the slide.
+     * @return Returns true if removed otherwise false.
+     */
+    public synchronized boolean remove(String filePath) {
+        var slot = findSlot(Slide.normalizePath(filePath));
+        if (slot < 0) return false;
+
+        removeSlot(slot);
+        return true;
+    }
+
+    /**
+     * Replace the slide with the same file path, for example because the file changed on disk. The slide keeps its
+     * position and the new handle replaces the old one, so nothing of the old file's decode state is reused.
+     *
+     * @param slide The slide with the new file information.
+     * @return Returns false if the playlist has no slide with this path.
+     */
+    public synchronized boolean replace(Slide slide) {
+        var slot = findSlot(slide.getFilePath());
+        if (slot < 0) return false;
+
+        fileSizes[slot] = slide.getFileSize();
+        lastModifiedTimes[slot] = slide.getLastModified();
+        sourceWidths[slot] = (int) slide.getSourceWidth();
+        sourceHeights[slot] = (int) slide.getSourceHeight();
+        slideHandles.put(slot, slide);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+        return o instanceof Slide && remove(((Slide) o).getFilePath());
+    }
+
+    /**
+     * Remove the slide at a position.
+     *
+     * @param index The position of the slide.
+     * @return Returns the removed slide.
+     */
+    @Override
+    public synchronized Slide remove(int index) {
+        var slot = slotOf(index);
+        var slide = getSlideAtSlot(slot);
+        removeSlot(slot);
+        return slide;
+    }
+
+    @Override
+    public synchronized void clear() {
+        paths = new String[minCapacity];
+        fileSizes = new long[minCapacity];
+        lastModifiedTimes = new long[minCapacity];
+        sourceWidths = new int[minCapacity];
+        sourceHeights = new int[minCapacity];
+        liveTree = new int[minCapacity + 1];
+        pathIndex = new int[minCapacity * 2];
+        pathIndexUsed = 0;
+        slotCount = 0;
+        liveCount = 0;
+        slideHandles.clear();
+        modCount++;
+    }
+
+    @Override
+    public synchronized int size() {
+        return liveCount;
+    }
+
+    /**
+     * Get the file path of the slide at a position without creating a slide handle.
+     *
+     * @param index The position of the slide.
+     * @return Returns the file path.
+     */
+    public synchronized String getFilePath(int index) {
+        return paths[slotOf(index)];
+    }
+
+    /**
+     * Get the file size of the slide at a position without creating a slide handle.
+     *
+     * @param index The position of the slide.
+     * @return Returns the size in bytes.
+     */
+    public synchronized long getFileSize(int index) {
+        return fileSizes[slotOf(index)];
+    }
+
+    /**
+     * Get the last modification time of the slide at a position without creating a slide handle.
+     *
+     * @param index The position of the slide.
+     * @return Returns the time in milliseconds since the epoch.
+     */
+    public synchronized long getLastModified(int index) {
+        return lastModifiedTimes[slotOf(index)];
+    }
+
+    /**
+     * Get the width of the slide at a position without creating a slide handle.
+     *
+     * @param index The position of the slide.
+     * @return Returns 0 if unknown.
+     */
+    public synchronized int getSourceWidth(int index) {
+        var slot = slotOf(index);
+        var slide = slideHandles.get(slot);
+        return slide != null ? (int) slide.getSourceWidth() : sourceWidths[slot];
+    }
+
+    /**
+     * Get the height of the slide at a position without creating a slide handle.
+     *
+     * @param index The position of the slide.
+     * @return Returns 0 if unknown.
+     */
+    public synchronized int getSourceHeight(int index) {
+        var slot = slotOf(index);
+        var slide = slideHandles.get(slot);
+        return slide != null ? (int) slide.getSourceHeight() : sourceHeights[slot];
+    }
+
+    /**
+     * Replace all slides with slides whose file information was stored earlier, for example in a saved playlist. The
+     * files aren't touched and the paths aren't normalized again, they must be as getFilePath() returned them.
+     * Duplicate paths are skipped.
+     *
+     * @param filePaths     The file paths of the images.
+     * @param fileSizes     The sizes of the image files in bytes.
+     * @param lastModified  The last modification times of the image files in milliseconds since the epoch.
+     * @param sourceWidths  The widths of the images. (0 if unknown.)
+     * @param sourceHeights The heights of the images. (0 if unknown.)
+     * @param count         The amount of slides in the arrays.
+     */
+    public synchronized void setAll(String[] filePaths, long[] fileSizes, long[] lastModified, int[] sourceWidths, int[] sourceHeights, int count) {
+        clear();
+        ensureCapacity(count);
+        for (int i = 0; i < count; i++)
+            addNormalized(filePaths[i], fileSizes[i], lastModified[i], sourceWidths[i], sourceHeights[i]);
+    }
+
+    private Slide getSlideAtSlot(int slot) {
+        var slide = slideHandles.get(slot);
+        if (slide == null) {
+            slide = new Slide(paths[slot], fileSizes[slot], lastModifiedTimes[slot], sourceWidths[slot], sourceHeights[slot]);
+            slideHandles.put(slot, slide);
+        }
+        return slide;
+    }
+
+    // Handles learn the source size when they're first decoded, keep it when the handle goes.
+    private void storeSourceSize(int slot, Slide slide) {
+        if (slot < slotCount && paths[slot] != null) {
+            sourceWidths[slot] = (int) slide.getSourceWidth();
+            sourceHeights[slot] = (int) slide.getSourceHeight();
+        }
+    }
+
+    private void removeSlot(int slot) {
+        removeFromIndex(paths[slot]);
+        paths[slot] = null;
+        treeAdd(slot, -1);
+        liveCount--;
+        slideHandles.remove(slot);
+        modCount++;
+
+        if (slotCount > minCapacity && liveCount < slotCount / 2)
+            compact();
+    }
+
+    private int slotOf(int index) {
+        if (index < 0 || index >= liveCount)
+            throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for length %d", index, liveCount));
+        return treeFind(index + 1);
+    }
+
+    /**
+     * Move the live slots to the front, in order, and rebuild the tree and the path index.
+     */
+    private void compact() {
+        slideHandles.forEach(this::storeSourceSize);
+        var handles = new LinkedHashMap<Integer, Slide>();
+
+        var target = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (paths[slot] == null) continue;
+
+            var handle = slideHandles.get(slot);
+            if (handle != null) handles.put(target, handle);
+
+            paths[target] = paths[slot];
+            fileSizes[target] = fileSizes[slot];
+            lastModifiedTimes[target] = lastModifiedTimes[slot];
+            sourceWidths[target] = sourceWidths[slot];
+            sourceHeights[target] = sourceHeights[slot];
+            target++;
+        }
+        Arrays.fill(paths, target, slotCount, null);
+        slotCount = target;
+
+        var capacity = Math.max(minCapacity, Integer.highestOneBit(Math.max(1, slotCount)) * 2);
+        paths = Arrays.copyOf(paths, capacity);
+        fileSizes = Arrays.copyOf(fileSizes, capacity);
+        lastModifiedTimes = Arrays.copyOf(lastModifiedTimes, capacity);
+        sourceWidths = Arrays.copyOf(sourceWidths, capacity);
+        sourceHeights = Arrays.copyOf(sourceHeights, capacity);
+        rebuildTree(capacity);
+        rebuildIndex(capacity * 2);
+
+        slideHandles.clear();
+        slideHandles.putAll(handles);
+    }
+
+    private void ensureCapacity(int slots) {
+        if (slots <= paths.length) return;
+
+        var capacity = paths.length * 2;
+        while (capacity < slots) capacity *= 2;
+        paths = Arrays.copyOf(paths, capacity);
+        fileSizes = Arrays.copyOf(fileSizes, capacity);
+        lastModifiedTimes = Arrays.copyOf(lastModifiedTimes, capacity);
+        sourceWidths = Arrays.copyOf(sourceWidths, capacity);
+        sourceHeights = Arrays.copyOf(sourceHeights, capacity);
+        rebuildTree(capacity);
+        rebuildIndex(capacity * 2);
+    }
+
+    // Fenwick tree.
+
+    private void rebuildTree(int capacity) {
+        liveTree = new int[capacity + 1];
+        for (int i = 1; i <= capacity; i++) {
+            if (i - 1 < slotCount && paths[i - 1] != null) liveTree[i]++;
+            var parent = i + (i & -i);
+            if (parent <= capacity) liveTree[parent] += liveTree[i];
+        }
+    }
+
+    private void treeAdd(int slot, int delta) {
+        for (int i = slot + 1; i < liveTree.length; i += i & -i)
+            liveTree[i] += delta;
+    }
+
+    private int treePrefixSum(int count) {
+        var sum = 0;
+        for (int i = count; i > 0; i -= i & -i)
+            sum += liveTree[i];
+        return sum;
+    }
+
+    /**
+     * Find the slot holding the n-th live slide (1 based).
+     */
+    private int treeFind(int n) {
+        var position = 0;
+        for (int step = Integer.highestOneBit(liveTree.length - 1); step > 0; step >>= 1) {
+            var next = position + step;
+            if (next < liveTree.length && liveTree[next] < n) {
+                position = next;
+                n -= liveTree[next];
+            }
+        }
+        return position;
+    }
+
+    // Path index.
+
+    private int findSlot(String filePath) {
+        var mask = pathIndex.length - 1;
+        for (int i = mix(filePath.hashCode()) & mask; ; i = (i + 1) & mask) {
+            var entry = pathIndex[i];
+            if (entry == emptySlot) return -1;
+            if (entry != removedSlot && filePath.equals(paths[entry - 1])) return entry - 1;
+        }
+    }
+
+    private void insertIntoIndex(String filePath, int slot) {
+        // Keep the index at most half full, counting removed markers, so probes stay short.
+        if ((pathIndexUsed + 1) * 2 > pathIndex.length)
+            rebuildIndex(pathIndex.length * 2);
+
+        var mask = pathIndex.length - 1;
+        var i = mix(filePath.hashCode()) & mask;
+        while (pathIndex[i] != emptySlot && pathIndex[i] != removedSlot)
+            i = (i + 1) & mask;
+        if (pathIndex[i] == emptySlot) pathIndexUsed++;
+        pathIndex[i] = slot + 1;
+    }
+
+    private void removeFromIndex(String filePath) {
+        var mask = pathIndex.length - 1;
+        for (int i = mix(filePath.hashCode()) & mask; ; i = (i + 1) & mask) {
+            var entry = pathIndex[i];
+            if (entry == emptySlot) return;
+            if (entry != removedSlot && filePath.equals(paths[entry - 1])) {
+                pathIndex[i] = removedSlot;
+                return;
+            }
+        }
+    }
+
+    private void rebuildIndex(int size) {
+        // Grow further if the live slides alone would fill it more than half.
+        while (liveCount * 2 >= size) size *= 2;
+
+        pathIndex = new int[size];
+        pathIndexUsed = 0;
+        var mask = size - 1;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (paths[slot] == null) continue;
+            var i = mix(paths[slot].hashCode()) & mask;
+            while (pathIndex[i] != emptySlot) i = (i + 1) & mask;
+            pathIndex[i] = slot + 1;
+            pathIndexUsed++;
+        }
+    }
+
+    private static int mix(int hash) {
+        // Spread the bits, String hash codes of similar paths differ mostly in the low bits.
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
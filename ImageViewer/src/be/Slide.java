@@ -1,15 +1,40 @@
 package be;
 
+import bll.ContentIndex;
+import bll.ImageCache;
+import bll.ImageDecoder;
+import bll.Logger;
+import bll.SlideLoader;
+import bll.StartupTimer;
+import bll.ThumbnailStore;
 import javafx.scene.image.Image;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.CompletableFuture;
 
 public class Slide {
 
     private String fileName;
+    private String filePath;
     private File file;
-    private Image image;
+    private long fileSize;
+    private long lastModified;
     private boolean loaded;
+    private boolean sourceSizeRead;
+    private double sourceWidth;
+    private double sourceHeight;
+    private int decodeWidth;
+    private int decodeHeight;
+    private CompletableFuture<Image> pendingLoad;
+    private double pendingViewportWidth;
+    private double pendingViewportHeight;
+    private boolean pendingIsPrefetch;
+    // The loadImage() callers waiting for the pending decode, slideshows sharing this slide may each be one.
+    private int pendingWaiters;
 
     public Slide() {
 
@@ -19,6 +44,28 @@ public class Slide {
         setFilePath(filePath);
     }
 
+    /**
+     * Create a slide from file information that was already read, without touching the file.
+     * @param filePath The file path of the image.
+     * @param fileSize The size of the image file in bytes.
+     * @param lastModified The last modification time of the image file in milliseconds since the epoch.
+     * @param sourceWidth The width of the image. (0 or less if unknown, it is then read when decoding.)
+     * @param sourceHeight The height of the image. (0 or less if unknown, it is then read when decoding.)
+     */
+    public Slide(String filePath, long fileSize, long lastModified, double sourceWidth, double sourceHeight) {
+        this.filePath = normalizePath(filePath);
+        file = new File(this.filePath);
+        setFileName(file.getName());
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        loaded = true;
+        if (sourceWidth > 0 && sourceHeight > 0) {
+            this.sourceWidth = sourceWidth;
+            this.sourceHeight = sourceHeight;
+            sourceSizeRead = true;
+        }
+    }
+
     /**
      * Get the file name of the image.
      * @return
@@ -37,43 +84,267 @@ public class Slide {
 
     /**
      * Get the file path of the image.
-     * @return
+     * @return Returns the absolute, normalized file path.
      */
     public String getFilePath() {
-        return file.toURI().getPath();
+        return filePath;
     }
 
     /**
-     * Set the file path of the image and load it.
-     * @param filePath The file path of the image to load.
+     * Make a file path absolute and remove redundant parts like "./", the way slides store their paths. This doesn't
+     * touch the file system.
+     * @param filePath The file path to normalize.
+     * @return Returns the normalized file path.
+     */
+    public static String normalizePath(String filePath) {
+        return Path.of(filePath).toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Set the file path of the image. This only reads the file's size and modification time, the image itself is
+     * decoded on demand by loadImage().
+     * @param filePath The file path of the image.
      */
     public void setFilePath(String filePath) {
-        file = new File(filePath);
-        if (file.exists()) {
+        this.filePath = normalizePath(filePath);
+        file = new File(this.filePath);
+        try {
+            var attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
             setFileName(file.getName());
-            setImage(new Image(file.toURI().toString()));
-            loaded = true;
-        } else loaded = false;
+            fileSize = attributes.size();
+            lastModified = attributes.lastModifiedTime().toMillis();
+            loaded = attributes.isRegularFile();
+        } catch (IOException e) {
+            loaded = false;
+        }
     }
 
     /**
-     * Get the image instance.
-     * @return Returns null if no image instance is instantiated.
+     * Get the size of the image file.
+     * @return Returns the size in bytes.
      */
-    public Image getImage() {
-        return image;
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * Get the last modification time of the image file.
+     * @return Returns the time in milliseconds since the epoch.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Get the image for a viewport from the shared image cache, or decode it in the background if it isn't cached
+     * large enough. If a big enough decode is already running no new decode is started.
+     * @param viewportWidth The viewport width in device pixels.
+     * @param viewportHeight The viewport height in device pixels.
+     * @return Returns a future that completes with the decoded image.
+     */
+    public synchronized CompletableFuture<Image> loadImage(double viewportWidth, double viewportHeight) {
+        return requestImage(viewportWidth, viewportHeight, SlideLoader.displayPriority, false);
+    }
+
+    /**
+     * Decode the image in the background ahead of it being shown. Unlike loadImage() this decode can be cancelled with
+     * cancelPrefetch() until the slide is actually requested for display.
+     * @param viewportWidth The viewport width in device pixels.
+     * @param viewportHeight The viewport height in device pixels.
+     * @param priority The decode priority. (See SlideLoader.)
+     * @return Returns a future that completes with the decoded image.
+     */
+    public synchronized CompletableFuture<Image> prefetchImage(double viewportWidth, double viewportHeight, int priority) {
+        return requestImage(viewportWidth, viewportHeight, priority, true);
+    }
+
+    /**
+     * Cancel a decode started by prefetchImage(). Decodes that are requested for display aren't cancelled.
+     */
+    public synchronized void cancelPrefetch() {
+        if (pendingLoad != null && pendingIsPrefetch) {
+            pendingLoad.cancel(false);
+            pendingLoad = null;
+        }
+    }
+
+    /**
+     * Stop waiting for a decode returned by loadImage(), for example because another slide was shown before it got its
+     * turn. Once nobody waits for the decode anymore it is cancelled, unless it already started; a decode that started
+     * is left to finish and is cached.
+     * @param load The future returned by loadImage().
+     */
+    public void cancelLoad(CompletableFuture<Image> load) {
+        synchronized (this) {
+            if (load == null || load != pendingLoad || pendingWaiters == 0 || --pendingWaiters > 0) return;
+            // If the decode already started, a later request decodes again instead of waiting for this one.
+            pendingLoad = null;
+        }
+        // Cancelling runs the callbacks of whoever waited for the decode, they may take their own locks.
+        SlideLoader.getInstance().cancelQueued(load);
+    }
+
+    private CompletableFuture<Image> requestImage(double viewportWidth, double viewportHeight, int priority, boolean prefetch) {
+        var key = findCacheKey(viewportWidth, viewportHeight);
+        if (key != null) {
+            // Prefetches don't count towards the cache's hit rate, it should reflect what's shown.
+            var image = prefetch ? ImageCache.getInstance().peek(key) : ImageCache.getInstance().get(key);
+            if (image != null)
+                return CompletableFuture.completedFuture(image);
+        } else if (!prefetch)
+            ImageCache.getInstance().recordMiss();
+
+        if (pendingLoad != null && pendingViewportWidth >= viewportWidth && pendingViewportHeight >= viewportHeight) {
+            // Move a queued prefetch up when the slide is needed sooner.
+            if (pendingIsPrefetch) {
+                SlideLoader.getInstance().reprioritize(pendingLoad, priority);
+                pendingIsPrefetch = prefetch;
+            }
+            if (!prefetch) pendingWaiters++;
+            return pendingLoad;
+        }
+
+        // A smaller prefetch is replaced by this bigger decode.
+        if (pendingLoad != null && pendingIsPrefetch)
+            pendingLoad.cancel(false);
+
+        var load = SlideLoader.getInstance().submit(() -> decode(viewportWidth, viewportHeight), priority);
+        pendingViewportWidth = viewportWidth;
+        pendingViewportHeight = viewportHeight;
+        pendingIsPrefetch = prefetch;
+        pendingWaiters = prefetch ? 0 : 1;
+        pendingLoad = load;
+        // Don't keep the finished future around, it would keep the image from being evicted.
+        load.whenComplete((image, e) -> clearPendingLoad(load));
+        return load;
+    }
+
+    private synchronized void clearPendingLoad(CompletableFuture<Image> load) {
+        if (pendingLoad == load) {
+            pendingLoad = null;
+            pendingWaiters = 0;
+        }
     }
 
     /**
-     * Set the image.
-     * @param image The image to replace with.
+     * Get a small preview of the image from the thumbnail store, which makes it once if needed.
+     * @return Returns a future that completes with the thumbnail, or with null if the image couldn't be decoded.
      */
-    protected void setImage(Image image) {
-        this.image = image;
+    public CompletableFuture<Image> loadThumbnail() {
+        return ThumbnailStore.getInstance().loadThumbnail(filePath, fileSize, lastModified);
+    }
+
+    /**
+     * Get a preview to show while the image is decoded: the thumbnail if it's in the thumbnail store, otherwise one is
+     * made ahead of all other decodes. (See ImageDecoder.decodePreview().) There's no preview while the thumbnail store
+     * is still being opened, this never waits for it.
+     * @return Returns a future that completes with the preview, or with null if the image couldn't be decoded or the
+     * thumbnail store isn't open yet. Cancelling it before the preview is made removes it from the decode queue.
+     */
+    public CompletableFuture<Image> loadPreview() {
+        var thumbnailStore = ThumbnailStore.getOpenInstance();
+        if (thumbnailStore == null) return CompletableFuture.completedFuture(null);
+        return thumbnailStore.loadThumbnail(filePath, fileSize, lastModified, SlideLoader.previewPriority);
+    }
+
+    /**
+     * Does the viewport need a new decode? This is the case if the image was never decoded, was decoded smaller than the
+     * viewport needs or was evicted from the image cache.
+     * @param viewportWidth The viewport width in device pixels.
+     * @param viewportHeight The viewport height in device pixels.
+     * @return Returns true if yes otherwise false.
+     */
+    public synchronized boolean needsDecode(double viewportWidth, double viewportHeight) {
+        return findCacheKey(viewportWidth, viewportHeight) == null;
+    }
+
+    /**
+     * Find a cached decode that is large enough for a viewport: the biggest decode this slide made, or the decode for
+     * exactly this viewport (which another handle for the same file may have made).
+     */
+    private ImageCache.Key findCacheKey(double viewportWidth, double viewportHeight) {
+        var size = ImageDecoder.computeDecodeSize(sourceWidth, sourceHeight, viewportWidth, viewportHeight);
+        if (decodeWidth > 0 && size.getWidth() <= decodeWidth && size.getHeight() <= decodeHeight
+                && ImageCache.getInstance().contains(getCacheKey()))
+            return getCacheKey();
+
+        if (sourceSizeRead) {
+            var key = getCacheKey(viewportWidth, viewportHeight);
+            if (ImageCache.getInstance().contains(key)) return key;
+        }
+        return null;
+    }
+
+    /**
+     * Get the key of the last decode of this slide in the shared image cache.
+     * @return Returns the key.
+     */
+    public synchronized ImageCache.Key getCacheKey() {
+        return new ImageCache.Key(filePath, lastModified, decodeWidth, decodeHeight);
+    }
+
+    private ImageCache.Key getCacheKey(double viewportWidth, double viewportHeight) {
+        var size = ImageDecoder.computeDecodeSize(sourceWidth, sourceHeight, viewportWidth, viewportHeight);
+        return new ImageCache.Key(filePath, lastModified, (int) size.getWidth(), (int) size.getHeight());
+    }
+
+    private Image decode(double viewportWidth, double viewportHeight) {
+        if (!sourceSizeRead) {
+            var sourceSize = ImageDecoder.readSourceSize(file);
+            synchronized (this) {
+                sourceWidth = sourceSize != null ? sourceSize.getWidth() : 0;
+                sourceHeight = sourceSize != null ? sourceSize.getHeight() : 0;
+                sourceSizeRead = true;
+            }
+        }
+
+        var size = ImageDecoder.computeDecodeSize(sourceWidth, sourceHeight, viewportWidth, viewportHeight);
+        // Slides of files with the same content share their decode.
+        var decoded = ContentIndex.getInstance().decode(filePath, fileSize, lastModified, (int) size.getWidth(), (int) size.getHeight(),
+                () -> ImageDecoder.decode(file, size.getWidth(), size.getHeight(), sourceWidth, sourceHeight));
+        if (decoded == null || decoded.isError()) {
+            Logger.getInstance().warn("Couldn't decode %s: %s", file.getPath(), decoded != null ? decoded.getException() : "unsupported or unreadable file");
+            return decoded;
+        }
+        StartupTimer.getInstance().mark(StartupTimer.Phase.FIRST_DECODE);
+
+        synchronized (this) {
+            // Only remember the biggest decode, a bigger one may have finished first.
+            if (size.getWidth() >= decodeWidth && size.getHeight() >= decodeHeight) {
+                decodeWidth = (int) size.getWidth();
+                decodeHeight = (int) size.getHeight();
+            }
+            ImageCache.getInstance().put(new ImageCache.Key(filePath, lastModified, (int) size.getWidth(), (int) size.getHeight()), decoded);
+            return decoded;
+        }
+    }
+
+    /**
+     * Get the width of the image file itself.
+     * @return Returns 0 if unknown or not decoded yet.
+     */
+    public double getSourceWidth() {
+        return sourceWidth;
+    }
+
+    /**
+     * Get the height of the image file itself.
+     * @return Returns 0 if unknown or not decoded yet.
+     */
+    public double getSourceHeight() {
+        return sourceHeight;
+    }
+
+    /**
+     * Get the decoded image from the shared image cache.
+     * @return Returns null if the image hasn't been decoded yet or was evicted from the cache.
+     */
+    public Image getImage() {
+        return decodeWidth > 0 ? ImageCache.getInstance().get(getCacheKey()) : null;
     }
 
     /**
-     * Is the image loaded?
+     * Does the image file exist?
      * @return Returns true if yes otherwise false.
      */
     public boolean isLoaded() {
@@ -1,28 +1,28 @@
 package be;
 
 import bll.SlideshowManager;
-import gui.controller.ImageViewerWindowController;
-import javafx.stage.Stage;
+import javafx.geometry.Rectangle2D;
 
+/**
+ * A slideshow taking part in the instance rotation. On its own it has no window, so it can be run headless; the image
+ * viewer's windows are a subclass that adds the stage and controller.
+ */
 public class SlideshowInstance {
     private long id;
-    private ImageViewerWindowController controller;
-    private Stage stage;
+    private SlideshowManager slideshowManager;
     private boolean active;
 
     public SlideshowInstance() {
 
     }
 
-    public SlideshowInstance(long id, ImageViewerWindowController controller, Stage stage) {
-        setId(id);
-        setController(controller);
-        setStage(stage);
+    public SlideshowInstance(SlideshowManager slideshowManager) {
+        setSlideshowManager(slideshowManager);
     }
 
-    public SlideshowInstance(ImageViewerWindowController controller, Stage stage) {
-        setController(controller);
-        setStage(stage);
+    public SlideshowInstance(long id, SlideshowManager slideshowManager) {
+        setId(id);
+        setSlideshowManager(slideshowManager);
     }
 
     /**
@@ -43,50 +43,40 @@ public class SlideshowInstance {
         this.id = id;
     }
 
-    /**
-     * Get the slideshow instance's controller.
-     *
-     * @return Returns the image viewer controller.
-     */
-    public ImageViewerWindowController getController() {
-        return controller;
-    }
-
     /**
      * Get the slideshow instance's slideshow manager.
      *
      * @return Returns the slideshow manager.
      */
     public SlideshowManager getSlideshowManager() {
-        return getController().getSlideShowManager();
+        return slideshowManager;
     }
 
     /**
-     * Set the slideshow instance's controller.
+     * Set the slideshow instance's slideshow manager.
      *
-     * @param controller The controller to use.
+     * @param slideshowManager The slideshow manager to use.
      */
-    public void setController(ImageViewerWindowController controller) {
-        this.controller = controller;
-        this.controller.setSlideshowInstance(this);
+    public void setSlideshowManager(SlideshowManager slideshowManager) {
+        this.slideshowManager = slideshowManager;
     }
 
     /**
-     * Get the slideshow instance's stage.
+     * Get the bounds of the window the slideshow is shown in.
      *
-     * @return Returns the stage.
+     * @return Returns null if the slideshow has no window.
      */
-    public Stage getStage() {
-        return stage;
+    public Rectangle2D getWindowBounds() {
+        return null;
     }
 
     /**
-     * Set the slideshow instance's stage.
+     * Is the window the slideshow is shown in maximized?
      *
-     * @param stage The stage to use.
+     * @return Returns true if yes otherwise false. (Always false without a window.)
      */
-    public void setStage(Stage stage) {
-        this.stage = stage;
+    public boolean isMaximized() {
+        return false;
     }
 
     /**
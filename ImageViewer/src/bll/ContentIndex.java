@@ -0,0 +1,250 @@
+package bll;
+
+import javafx.scene.image.Image;
+
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+/**
+ * Lets slides of files with the same content share one decoded image: the same file in several slideshows, copies of a
+ * file and the same file reached through different paths. A file's content is identified by a CRC32C and a CRC32 of
+ * its bytes and its length, computed on the decode thread right before the first decode and remembered until the file
+ * changes.
+ * <p>
+ * An image decoded from a content at a size is handed out again as long as anything still holds it, the image cache
+ * or an image view; the cache counts an image it holds under several keys once. While one decode of a content runs,
+ * other decodes of it wait for that one instead of decoding it again. Set the imageviewer.dedupe system property to
+ * false to decode every file on its own.
+ */
+public class ContentIndex {
+
+    /**
+     * The amount of files whose content id is remembered.
+     */
+    public static final int maxRememberedFiles = 64 * 1024;
+
+    private static final int readBufferBytes = 256 * 1024;
+
+    private final boolean enabled;
+    private final Map<String, FileContent> fileContents = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FileContent> eldest) {
+            return size() > maxRememberedFiles;
+        }
+    };
+    private final Map<DecodeKey, ImageReference> images = new HashMap<>();
+    private final Map<DecodeKey, CompletableFuture<Image>> runningDecodes = new HashMap<>();
+    private final ReferenceQueue<Image> collectedImages = new ReferenceQueue<>();
+    private final Metrics.Counter hashedFiles = Metrics.getInstance().counter("content.hashed");
+    private final Metrics.Counter sharedDecodes = Metrics.getInstance().counter("content.shared");
+    private final LatencyHistogram hashTime = Metrics.getInstance().histogram("content.hashTime");
+
+    private static ContentIndex instance;
+
+    public ContentIndex() {
+        this(Boolean.parseBoolean(System.getProperty("imageviewer.dedupe", "true")));
+    }
+
+    public ContentIndex(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Decode a file, or hand out the image an earlier decode of the same content at the same size made. Call it on a
+     * decode thread, it may read the whole file and may wait for another decode.
+     *
+     * @param filePath     The normalized file path of the image.
+     * @param fileSize     The size of the image file in bytes.
+     * @param lastModified The last modification time of the image file in milliseconds since the epoch.
+     * @param width        The width to decode at.
+     * @param height       The height to decode at.
+     * @param decoder      Decodes the file if no image of its content can be shared.
+     * @return Returns the image, or what the decoder returned.
+     */
+    public Image decode(String filePath, long fileSize, long lastModified, int width, int height, Supplier<Image> decoder) {
+        var contentId = enabled ? getContentId(filePath, fileSize, lastModified) : null;
+        if (contentId == null) return decoder.get();
+
+        var key = new DecodeKey(contentId, width, height);
+        CompletableFuture<Image> running;
+        var decoding = false;
+        synchronized (this) {
+            removeCollectedImages();
+            var reference = images.get(key);
+            var image = reference != null ? reference.get() : null;
+            if (image != null) {
+                sharedDecodes.increment();
+                return image;
+            }
+
+            running = runningDecodes.get(key);
+            if (running == null) {
+                running = new CompletableFuture<>();
+                runningDecodes.put(key, running);
+                decoding = true;
+            }
+        }
+
+        if (!decoding) {
+            try {
+                var image = running.join();
+                if (image != null && !image.isError()) {
+                    sharedDecodes.increment();
+                    return image;
+                }
+            } catch (CompletionException ignored) {
+            }
+            // The other path may be readable where the first wasn't.
+            return decoder.get();
+        }
+
+        Image image = null;
+        try {
+            image = decoder.get();
+            return image;
+        } finally {
+            synchronized (this) {
+                runningDecodes.remove(key);
+                if (image != null && !image.isError())
+                    images.put(key, new ImageReference(key, image, collectedImages));
+            }
+            running.complete(image);
+        }
+    }
+
+    /**
+     * Get the content id of a file, hashing the file if it wasn't hashed at this size and modification time before.
+     *
+     * @param filePath     The normalized file path.
+     * @param fileSize     The size of the file in bytes.
+     * @param lastModified The last modification time of the file in milliseconds since the epoch.
+     * @return Returns null if the file couldn't be read.
+     */
+    public String getContentId(String filePath, long fileSize, long lastModified) {
+        synchronized (fileContents) {
+            var content = fileContents.get(filePath);
+            if (content != null && content.fileSize == fileSize && content.lastModified == lastModified)
+                return content.contentId;
+        }
+
+        var contentId = hash(Path.of(filePath));
+        if (contentId == null) return null;
+
+        synchronized (fileContents) {
+            fileContents.put(filePath, new FileContent(fileSize, lastModified, contentId));
+        }
+        return contentId;
+    }
+
+    private String hash(Path file) {
+        var start = System.nanoTime();
+        var crc32c = new CRC32C();
+        var crc32 = new CRC32();
+        var length = 0L;
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var buffer = ByteBuffer.allocate(readBufferBytes);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                length += buffer.remaining();
+                crc32c.update(buffer.duplicate());
+                crc32.update(buffer);
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            Logger.getInstance().debug("Couldn't hash %s: %s", file, e);
+            return null;
+        }
+
+        hashedFiles.increment();
+        hashTime.record(System.nanoTime() - start);
+        return String.format("%08x%08x-%x", crc32c.getValue(), crc32.getValue(), length);
+    }
+
+    private void removeCollectedImages() {
+        ImageReference reference;
+        while ((reference = (ImageReference) collectedImages.poll()) != null)
+            images.remove(reference.key, reference);
+    }
+
+    /**
+     * Get the amount of decoded images that can currently be shared.
+     *
+     * @return Returns the amount.
+     */
+    public synchronized int getImageCount() {
+        removeCollectedImages();
+        return images.size();
+    }
+
+    /**
+     * Get the singleton instance.
+     */
+    public static synchronized ContentIndex getInstance() {
+        if (instance == null) {
+            var index = new ContentIndex();
+            Metrics.getInstance().gauge("content.images", index::getImageCount);
+            instance = index;
+        }
+        return instance;
+    }
+
+    private static class FileContent {
+        private final long fileSize;
+        private final long lastModified;
+        private final String contentId;
+
+        FileContent(long fileSize, long lastModified, String contentId) {
+            this.fileSize = fileSize;
+            this.lastModified = lastModified;
+            this.contentId = contentId;
+        }
+    }
+
+    private static class DecodeKey {
+        private final String contentId;
+        private final int width;
+        private final int height;
+
+        DecodeKey(String contentId, int width, int height) {
+            this.contentId = contentId;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof DecodeKey)) return false;
+            var other = (DecodeKey) o;
+            return width == other.width && height == other.height && contentId.equals(other.contentId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(contentId, width, height);
+        }
+    }
+
+    private static class ImageReference extends WeakReference<Image> {
+        private final DecodeKey key;
+
+        ImageReference(DecodeKey key, Image image, ReferenceQueue<Image> queue) {
+            super(image, queue);
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package bll;
+
+import java.nio.file.Path;
+
+public class DataFolder {
+
+    private DataFolder() {
+
+    }
+
+    /**
+     * Get the folder the image viewer keeps its files in (thumbnails, sessions, startup times), unless the
+     * imageviewer.dataFolder system property says otherwise.
+     *
+     * @return Returns the .imageviewer folder in the user's home folder.
+     */
+    public static Path get() {
+        var property = System.getProperty("imageviewer.dataFolder");
+        return property != null ? Path.of(property) : Path.of(System.getProperty("user.home"), ".imageviewer");
+    }
+
+    /**
+     * Get a file in the data folder.
+     *
+     * @param name The name of the file.
+     * @return Returns the path of the file.
+     */
+    public static Path resolve(String name) {
+        return get().resolve(name);
+    }
+}
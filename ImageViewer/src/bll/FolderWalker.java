@@ -0,0 +1,112 @@
+package bll;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily lists the supported image files in a folder, and optionally in its sub folders, one directory entry at a time.
+ * Only the directory being read is held open, so even folders with hundreds of thousands of images start producing
+ * files right away. Folders that can't be read are skipped, symbolic links to folders aren't followed.
+ */
+public class FolderWalker implements Iterator<Path>, AutoCloseable {
+
+    private final boolean recursive;
+    private final Deque<Path> pendingFolders = new ArrayDeque<>();
+    private DirectoryStream<Path> currentStream;
+    private Iterator<Path> currentEntries;
+    private Path next;
+
+    public FolderWalker(Path folder, boolean recursive) {
+        this.recursive = recursive;
+        pendingFolders.push(folder);
+    }
+
+    /**
+     * List the supported image files of a folder as a lazy stream. Close the stream when done with it.
+     *
+     * @param folder    The folder to list.
+     * @param recursive Whether to include the sub folders.
+     * @return Returns the stream of image files.
+     */
+    public static Stream<Path> walk(Path folder, boolean recursive) {
+        var walker = new FolderWalker(folder, recursive);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(walker, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(walker::close);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null) {
+            var entry = nextEntry();
+            if (entry != null) {
+                // Check the name first, that way only entries that can't be images cost a stat call.
+                if (ImageDecoder.isSupported(entry.getFileName().toString()))
+                    next = entry;
+                else if (recursive && Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS))
+                    pendingFolders.push(entry);
+            } else if (!openNextFolder()) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Path next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        var path = next;
+        next = null;
+        return path;
+    }
+
+    private Path nextEntry() {
+        try {
+            return currentEntries != null && currentEntries.hasNext() ? currentEntries.next() : null;
+        } catch (DirectoryIteratorException e) {
+            Logger.getInstance().warn("Stopped reading a folder: %s", e.getCause());
+            return null;
+        }
+    }
+
+    private boolean openNextFolder() {
+        closeCurrentStream();
+        while (!pendingFolders.isEmpty()) {
+            var folder = pendingFolders.pop();
+            try {
+                currentStream = Files.newDirectoryStream(folder);
+                currentEntries = currentStream.iterator();
+                return true;
+            } catch (IOException e) {
+                Logger.getInstance().warn("Skipping folder %s: %s", folder, e);
+            }
+        }
+        return false;
+    }
+
+    private void closeCurrentStream() {
+        if (currentStream != null) {
+            try {
+                currentStream.close();
+            } catch (IOException ignored) {
+            }
+            currentStream = null;
+            currentEntries = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        closeCurrentStream();
+        pendingFolders.clear();
+    }
+}
@@ -0,0 +1,320 @@
+package bll;
+
+import be.Slide;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps slideshows up to date with the folders their slides are in. Image files that are added, replaced or deleted
+ * are added to, reloaded in or removed from every slideshow with slides in that folder, without listing the folder
+ * again. Events are collected until the folder has been quiet for a moment, so a burst of changes (an rsync or a copy
+ * of many files) is applied at once, but never later than maxDelayMillis after the first change.
+ * <p>
+ * All bookkeeping is done on one daemon thread. Set the imageviewer.watch system property to false to watch nothing.
+ */
+public class FolderWatcher {
+
+    /**
+     * The time without new events after which the collected changes are applied.
+     */
+    public static final long quietMillis = 200;
+
+    /**
+     * The longest time changes are held back while events keep coming.
+     */
+    public static final long maxDelayMillis = 750;
+
+    private final WatchService watchService;
+    private final Queue<Runnable> requests = new ConcurrentLinkedQueue<>();
+
+    // Only touched by the watcher thread.
+    private final Map<Path, WatchKey> keys = new HashMap<>();
+    private final Map<Path, Set<SlideshowManager>> folderManagers = new HashMap<>();
+    private final Set<Path> changedFiles = new LinkedHashSet<>();
+    private final Set<Path> overflowedFolders = new HashSet<>();
+    private long firstEventTime;
+    private long lastEventTime;
+
+    private volatile int folderCount;
+
+    private static FolderWatcher instance;
+
+    public FolderWatcher() {
+        WatchService service = null;
+        if (Boolean.parseBoolean(System.getProperty("imageviewer.watch", "true"))) {
+            try {
+                service = FileSystems.getDefault().newWatchService();
+            } catch (IOException e) {
+                Logger.getInstance().warn("Can't watch folders for changes: %s", e);
+            }
+        }
+        watchService = service;
+
+        // Only start polling once the watch service is set, the thread would otherwise see it as null.
+        if (watchService != null) {
+            var thread = new Thread(this::run, "folder-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Watch the folders of a slideshow's slides. Call it again after the slideshow got slides from other folders, the
+     * folders it no longer has slides in are then no longer watched for it.
+     *
+     * @param slideshowManager The slideshow to keep up to date.
+     */
+    public void watch(SlideshowManager slideshowManager) {
+        if (watchService != null) requests.add(() -> register(slideshowManager));
+    }
+
+    /**
+     * Stop keeping a slideshow up to date.
+     *
+     * @param slideshowManager The slideshow.
+     */
+    public void unwatch(SlideshowManager slideshowManager) {
+        if (watchService != null) requests.add(() -> unregister(slideshowManager));
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                try {
+                    Runnable request;
+                    while ((request = requests.poll()) != null) request.run();
+
+                    // Also wakes up now and then without events, to pick up new requests.
+                    var key = watchService.poll(getWaitMillis(), TimeUnit.MILLISECONDS);
+                    while (key != null) {
+                        collectEvents(key);
+                        key = watchService.poll();
+                    }
+
+                    if (isDue()) applyChanges();
+                } catch (RuntimeException e) {
+                    Logger.getInstance().error("Couldn't apply folder changes: %s", e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+        }
+    }
+
+    private long getWaitMillis() {
+        if (!hasChanges()) return quietMillis;
+
+        var now = System.nanoTime();
+        var due = Math.min(lastEventTime + TimeUnit.MILLISECONDS.toNanos(quietMillis),
+                firstEventTime + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis));
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(due - now));
+    }
+
+    private boolean hasChanges() {
+        return !changedFiles.isEmpty() || !overflowedFolders.isEmpty();
+    }
+
+    private boolean isDue() {
+        if (!hasChanges()) return false;
+
+        var now = System.nanoTime();
+        return now - lastEventTime >= TimeUnit.MILLISECONDS.toNanos(quietMillis)
+                || now - firstEventTime >= TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+    }
+
+    private void register(SlideshowManager slideshowManager) {
+        // Paths are sorted by folder most of the time, so only look the folder up when it changes.
+        var folders = new HashSet<String>();
+        var playlist = slideshowManager.getSlides();
+        synchronized (playlist) {
+            String lastFolder = null;
+            for (int i = 0; i < playlist.size(); i++) {
+                var path = playlist.getFilePath(i);
+                var folder = path.substring(0, Math.max(0, path.lastIndexOf(File.separatorChar)));
+                if (!folder.equals(lastFolder)) folders.add(lastFolder = folder);
+            }
+        }
+
+        var watchedFolders = new HashSet<Path>();
+        for (var name : folders) watchedFolders.add(Path.of(name));
+        removeManager(slideshowManager, watchedFolders);
+
+        for (var folder : watchedFolders) {
+            if (!keys.containsKey(folder)) {
+                try {
+                    keys.put(folder, folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY));
+                } catch (IOException e) {
+                    Logger.getInstance().warn("Can't watch folder %s: %s", folder, e);
+                    continue;
+                }
+            }
+            folderManagers.computeIfAbsent(folder, f -> new HashSet<>()).add(slideshowManager);
+        }
+        folderCount = keys.size();
+        Logger.getInstance().debug("Watching %s folders.", folderCount);
+    }
+
+    private void unregister(SlideshowManager slideshowManager) {
+        removeManager(slideshowManager, Set.of());
+    }
+
+    /**
+     * Stop watching folders for a slideshow, except the ones it still has slides in. Folders no slideshow needs
+     * anymore aren't watched at all anymore.
+     */
+    private void removeManager(SlideshowManager slideshowManager, Set<Path> keptFolders) {
+        var iterator = folderManagers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            if (keptFolders.contains(entry.getKey())) continue;
+
+            if (entry.getValue().remove(slideshowManager) && entry.getValue().isEmpty()) {
+                var key = keys.remove(entry.getKey());
+                if (key != null) key.cancel();
+                iterator.remove();
+            }
+        }
+        folderCount = keys.size();
+    }
+
+    private void collectEvents(WatchKey key) {
+        var folder = (Path) key.watchable();
+        for (var event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflowedFolders.add(folder);
+                continue;
+            }
+
+            // Partial files like rsync's .name.jpg.XXXXXX don't have an image extension and are skipped here.
+            var name = (Path) event.context();
+            if (ImageDecoder.isSupported(name.toString()))
+                changedFiles.add(folder.resolve(name));
+        }
+
+        // A folder that was deleted can't be watched anymore, its files have reported their own deletion.
+        if (!key.reset()) {
+            keys.remove(folder);
+            folderManagers.remove(folder);
+            folderCount = keys.size();
+        }
+
+        // Events of skipped files still mean a burst is going on.
+        lastEventTime = System.nanoTime();
+        if (firstEventTime == 0 && hasChanges()) firstEventTime = lastEventTime;
+    }
+
+    private void applyChanges() {
+        // Events only tell that something happened to a file, look at the file now to know what it is.
+        for (var folder : overflowedFolders) changedFiles.addAll(listFolder(folder));
+        overflowedFolders.clear();
+
+        var slides = new LinkedHashMap<Path, CompletableFuture<Slide>>();
+        var removed = new ArrayList<Path>();
+        for (var file : changedFiles) {
+            if (Files.isRegularFile(file)) slides.put(file, SlideImporter.getInstance().createSlide(file));
+            else removed.add(file);
+        }
+        changedFiles.clear();
+        firstEventTime = 0;
+
+        var changes = new HashMap<SlideshowManager, Changes>();
+        slides.forEach((file, future) -> {
+            var slide = getSlide(future);
+            if (slide == null) return;
+            for (var slideshowManager : getManagers(file))
+                changes.computeIfAbsent(slideshowManager, m -> new Changes()).changed.add(slide);
+        });
+        for (var file : removed) {
+            for (var slideshowManager : getManagers(file))
+                changes.computeIfAbsent(slideshowManager, m -> new Changes()).removedPaths.add(file.toString());
+        }
+
+        changes.forEach((slideshowManager, change) -> {
+            var applied = slideshowManager.applyFileChanges(change.changed, change.removedPaths);
+            if (applied > 0) Logger.getInstance().debug("Applied %s file changes to a slideshow.", applied);
+        });
+    }
+
+    /**
+     * List a folder whose events were lost: its image files, and the files its slideshows have that may be gone.
+     */
+    private List<Path> listFolder(Path folder) {
+        var files = new ArrayList<Path>();
+        try (var walk = FolderWalker.walk(folder, false)) {
+            walk.forEach(files::add);
+        }
+
+        var prefix = folder.toString() + File.separatorChar;
+        for (var slideshowManager : folderManagers.getOrDefault(folder, Set.of())) {
+            var playlist = slideshowManager.getSlides();
+            synchronized (playlist) {
+                for (int i = 0; i < playlist.size(); i++) {
+                    var path = playlist.getFilePath(i);
+                    if (path.startsWith(prefix) && path.indexOf(File.separatorChar, prefix.length()) < 0)
+                        files.add(Path.of(path));
+                }
+            }
+        }
+        Logger.getInstance().info("Missed changes in %s, looked at its %s files.", folder, files.size());
+        return files;
+    }
+
+    private Set<SlideshowManager> getManagers(Path file) {
+        return folderManagers.getOrDefault(file.getParent(), Set.of());
+    }
+
+    private static Slide getSlide(CompletableFuture<Slide> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the amount of folders being watched.
+     *
+     * @return Returns the amount.
+     */
+    public int getFolderCount() {
+        return folderCount;
+    }
+
+    /**
+     * Get the singleton instance.
+     */
+    public static synchronized FolderWatcher getInstance() {
+        if (instance == null) {
+            var watcher = new FolderWatcher();
+            Metrics.getInstance().gauge("watch.folders", watcher::getFolderCount);
+            instance = watcher;
+        }
+        return instance;
+    }
+
+    private static class Changes {
+        private final List<Slide> changed = new ArrayList<>();
+        private final List<String> removedPaths = new ArrayList<>();
+    }
+}
@@ -0,0 +1,285 @@
+package bll;
+
+import javafx.scene.image.Image;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+public class ImageCache {
+
+    /**
+     * The byte budget used unless the imageviewer.imageCacheBytes system property says otherwise.
+     */
+    public static final long defaultByteBudget = 512L * 1024 * 1024;
+
+    // Access ordered, so iteration starts at the least recently used entry.
+    private final LinkedHashMap<Key, Image> entries = new LinkedHashMap<>(64, 0.75f, true);
+    // The amount of entries holding each image. Files with the same content share one image, it is counted once.
+    private final IdentityHashMap<Image, Integer> references = new IdentityHashMap<>();
+    private long byteBudget;
+    private long bytesHeld;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    private static ImageCache instance;
+
+    public ImageCache() {
+        this(Long.getLong("imageviewer.imageCacheBytes", defaultByteBudget));
+    }
+
+    public ImageCache(long byteBudget) {
+        this.byteBudget = byteBudget;
+    }
+
+    /**
+     * Get a decoded image and mark it as recently used.
+     *
+     * @param key The key of the image.
+     * @return Returns null if the image isn't cached.
+     */
+    public synchronized Image get(Key key) {
+        var image = entries.get(key);
+        if (image != null) hitCount++;
+        else missCount++;
+        return image;
+    }
+
+    /**
+     * Count a miss for an image that was looked for without a key, because it was never decoded at the needed size.
+     */
+    public synchronized void recordMiss() {
+        missCount++;
+    }
+
+    /**
+     * Get a decoded image and mark it as recently used without counting it as a hit or miss.
+     *
+     * @param key The key of the image.
+     * @return Returns null if the image isn't cached.
+     */
+    public synchronized Image peek(Key key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Is an image cached? This doesn't count as a hit or miss and doesn't change the eviction order.
+     *
+     * @param key The key of the image.
+     * @return Returns true if yes otherwise false.
+     */
+    public synchronized boolean contains(Key key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Add a decoded image, evicting the least recently used images until it fits the byte budget. Images bigger than
+     * the whole budget aren't cached. The same image may be added under several keys (see ContentIndex), it only takes
+     * up its bytes once.
+     *
+     * @param key   The key of the image.
+     * @param image The decoded image.
+     */
+    public synchronized void put(Key key, Image image) {
+        var size = sizeOf(image);
+        if (size > byteBudget) return;
+
+        var previous = entries.put(key, image);
+        if (previous != null) release(previous);
+        if (references.merge(image, 1, Integer::sum) == 1) bytesHeld += size;
+        trim(byteBudget);
+    }
+
+    /**
+     * Remove every cached decode of a file.
+     *
+     * @param path The file path of the image.
+     */
+    public synchronized void invalidate(String path) {
+        var iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            if (entry.getKey().path.equals(path)) {
+                release(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Evict least recently used images until at most the given amount of bytes is held.
+     *
+     * @param maxBytes The amount of bytes to keep at most.
+     */
+    public synchronized void trim(long maxBytes) {
+        Iterator<Map.Entry<Key, Image>> iterator = entries.entrySet().iterator();
+        while (bytesHeld > maxBytes && iterator.hasNext()) {
+            // Evicting an entry whose image other entries hold frees nothing yet, go on to the next one.
+            release(iterator.next().getValue());
+            iterator.remove();
+            evictionCount++;
+        }
+    }
+
+    /**
+     * Remove all cached images.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        references.clear();
+        bytesHeld = 0;
+    }
+
+    private void release(Image image) {
+        if (references.compute(image, (i, count) -> count == null || count <= 1 ? null : count - 1) == null)
+            bytesHeld -= sizeOf(image);
+    }
+
+    /**
+     * Set the maximum amount of bytes the cached images may take up.
+     *
+     * @param byteBudget The budget in bytes.
+     */
+    public synchronized void setByteBudget(long byteBudget) {
+        this.byteBudget = byteBudget;
+        trim(byteBudget);
+    }
+
+    public synchronized long getByteBudget() {
+        return byteBudget;
+    }
+
+    /**
+     * Get the amount of bytes held by the images of some files, for example those of one slideshow. The files are
+     * matched outside the cache's lock.
+     *
+     * @param paths Matches the file paths to count.
+     * @return Returns the amount of bytes.
+     */
+    public long getBytesHeld(Predicate<String> paths) {
+        String[] keyPaths;
+        long[] sizes;
+        synchronized (this) {
+            keyPaths = new String[entries.size()];
+            sizes = new long[entries.size()];
+            var i = 0;
+            for (var entry : entries.entrySet()) {
+                keyPaths[i] = entry.getKey().path;
+                sizes[i++] = sizeOf(entry.getValue());
+            }
+        }
+
+        var bytes = 0L;
+        for (int i = 0; i < keyPaths.length; i++)
+            if (paths.test(keyPaths[i])) bytes += sizes[i];
+        return bytes;
+    }
+
+    public synchronized long getBytesHeld() {
+        return bytesHeld;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * Get the amount of distinct images held. This is less than the amount of entries if files with the same content
+     * share their image.
+     *
+     * @return Returns the amount.
+     */
+    public synchronized int getImageCount() {
+        return references.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Get the amount of memory a decoded image takes up.
+     *
+     * @param image The image.
+     * @return Returns the size in bytes. (4 bytes per pixel.)
+     */
+    public static long sizeOf(Image image) {
+        return (long) image.getWidth() * (long) image.getHeight() * 4;
+    }
+
+    /**
+     * Get the singleton instance.
+     */
+    public static synchronized ImageCache getInstance() {
+        if (instance == null) {
+            var cache = new ImageCache();
+            var metrics = Metrics.getInstance();
+            metrics.gauge("cache.hits", cache::getHitCount);
+            metrics.gauge("cache.misses", cache::getMissCount);
+            metrics.gauge("cache.evictions", cache::getEvictionCount);
+            metrics.gauge("cache.bytes", cache::getBytesHeld);
+            metrics.gauge("cache.entries", cache::getEntryCount);
+            metrics.gauge("cache.images", cache::getImageCount);
+            instance = cache;
+        }
+        return instance;
+    }
+
+    /**
+     * Identifies one decode of one version of a file.
+     */
+    public static final class Key {
+        private final String path;
+        private final long lastModified;
+        private final int width;
+        private final int height;
+
+        public Key(String path, long lastModified, int width, int height) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.width = width;
+            this.height = height;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            var key = (Key) o;
+            return lastModified == key.lastModified && width == key.width && height == key.height && path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, lastModified, width, height);
+        }
+    }
+}
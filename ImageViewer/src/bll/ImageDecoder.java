@@ -0,0 +1,413 @@
+package bll;
+
+import javafx.geometry.Dimension2D;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+public class ImageDecoder {
+
+    /**
+     * Decodes image files into images that fit within a size, keeping their aspect ratio.
+     */
+    public interface Backend {
+        /**
+         * Decode an image so it fits within the given size.
+         *
+         * @param file   The image file to decode.
+         * @param width  The maximum width to decode at.
+         * @param height The maximum height to decode at.
+         * @return Returns null or an image in the error state if the file couldn't be decoded.
+         */
+        Image decode(File file, double width, double height);
+    }
+
+    /**
+     * Decodes with JavaFX's own image loader. Needs a running JavaFX toolkit.
+     */
+    public static final Backend javaFxBackend = (file, width, height) -> new Image(file.toURI().toString(), width, height, true, true);
+
+    /**
+     * Decodes with ImageIO and hands the pixels to JavaFX, which works without a running JavaFX toolkit (and thus without
+     * a display). It reads formats ImageIO has plugins for, such as TIFF.
+     */
+    public static final Backend imageIoBackend = ImageDecoder::decodeWithImageIO;
+
+    private static volatile Backend backend = "imageio".equalsIgnoreCase(System.getProperty("imageviewer.decoder")) ? imageIoBackend : javaFxBackend;
+
+    private static final Metrics.Counter decodeCount = Metrics.getInstance().counter("decode.count");
+    private static final Metrics.Counter failedDecodeCount = Metrics.getInstance().counter("decode.failed");
+    private static final Metrics.Counter decodedPixels = Metrics.getInstance().counter("decode.pixels");
+    private static final LatencyHistogram decodeTime = Metrics.getInstance().histogram("decode.time");
+
+    /**
+     * Decode sizes are rounded up to a multiple of this (in pixels) so small window resizes don't cause a new decode.
+     */
+    public static final int decodeSizeStep = 128;
+
+    /**
+     * The file extensions (lower case, without the dot) of the image formats that can be loaded as slides.
+     */
+    public static final List<String> supportedExtensions = List.of("png", "jpg", "jpeg", "gif", "tif", "tiff", "bmp");
+
+    /**
+     * The file extensions of the supported formats JavaFX can't decode. They are always decoded with ImageIO.
+     */
+    public static final List<String> imageIoOnlyExtensions = List.of("tif", "tiff");
+
+    /**
+     * Images with more pixels than this are always decoded with ImageIO. JavaFX decodes the whole image before scaling
+     * it down, which for scans and panoramas of hundreds of megapixels takes seconds and can run out of memory; ImageIO
+     * skips the pixels it doesn't need while reading.
+     */
+    public static final long largeImagePixels = 64L * 1024 * 1024;
+
+    private ImageDecoder() {
+
+    }
+
+    /**
+     * Read the pixel size of an image from its header without decoding it.
+     *
+     * @param file The image file to probe.
+     * @return Returns null if the size couldn't be read.
+     */
+    public static Dimension2D readSourceSize(File file) {
+        try (var input = ImageIO.createImageInputStream(file)) {
+            return readSourceSize(input);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Read the pixel size of an image from the first bytes of its file.
+     *
+     * @param header The first bytes of the image file.
+     * @return Returns null if the size couldn't be read, for example because it comes after the given bytes.
+     */
+    public static Dimension2D readSourceSize(byte[] header) {
+        try (var input = ImageIO.createImageInputStream(new ByteArrayInputStream(header))) {
+            return readSourceSize(input);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static Dimension2D readSourceSize(ImageInputStream input) throws IOException {
+        if (input == null) return null;
+
+        var readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) return null;
+
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            return new Dimension2D(reader.getWidth(0), reader.getHeight(0));
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Does a file have the extension of a supported image format?
+     *
+     * @param fileName The name of the file.
+     * @return Returns true if yes otherwise false.
+     */
+    public static boolean isSupported(String fileName) {
+        return supportedExtensions.contains(getExtension(fileName));
+    }
+
+    private static String getExtension(String fileName) {
+        var dot = fileName.lastIndexOf('.');
+        return dot >= 0 ? fileName.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * Get the backend that decodes a file. This is the configured backend, unless that is JavaFX and the file is a TIFF
+     * or too big to be decoded in one piece (see largeImagePixels), those are decoded with ImageIO.
+     *
+     * @param file         The image file.
+     * @param sourceWidth  The width of the image. (0 or less if unknown, the header is then read if it matters.)
+     * @param sourceHeight The height of the image. (0 or less if unknown.)
+     * @return Returns the backend.
+     */
+    public static Backend getBackend(File file, double sourceWidth, double sourceHeight) {
+        var configured = backend;
+        if (configured != javaFxBackend) return configured;
+        if (imageIoOnlyExtensions.contains(getExtension(file.getName()))) return imageIoBackend;
+
+        if (sourceWidth <= 0 || sourceHeight <= 0) {
+            var sourceSize = readSourceSize(file);
+            if (sourceSize == null) return configured;
+            sourceWidth = sourceSize.getWidth();
+            sourceHeight = sourceSize.getHeight();
+        }
+        return sourceWidth * sourceHeight > largeImagePixels ? imageIoBackend : configured;
+    }
+
+    /**
+     * Compute the size an image should be decoded at to fill a viewport. The aspect ratio is kept and the image is never
+     * decoded larger than its source size.
+     *
+     * @param sourceWidth    The source width of the image. (0 or less if unknown.)
+     * @param sourceHeight   The source height of the image. (0 or less if unknown.)
+     * @param viewportWidth  The width of the viewport in device pixels.
+     * @param viewportHeight The height of the viewport in device pixels.
+     * @return Returns the decode size.
+     */
+    public static Dimension2D computeDecodeSize(double sourceWidth, double sourceHeight, double viewportWidth, double viewportHeight) {
+        var width = roundUpToStep(viewportWidth);
+        var height = roundUpToStep(viewportHeight);
+
+        // Without a known source size let the decoder fit the image into the (rounded) viewport.
+        if (sourceWidth <= 0 || sourceHeight <= 0)
+            return new Dimension2D(width, height);
+
+        var scale = Math.min(1.0, Math.min(width / sourceWidth, height / sourceHeight));
+        return new Dimension2D(Math.ceil(sourceWidth * scale), Math.ceil(sourceHeight * scale));
+    }
+
+    /**
+     * Decode an image so it fits within the given size, keeping its aspect ratio.
+     *
+     * @param file   The image file to decode.
+     * @param width  The maximum width to decode at.
+     * @param height The maximum height to decode at.
+     * @return Returns null or an image in the error state if the file couldn't be decoded.
+     */
+    public static Image decode(File file, double width, double height) {
+        return decode(file, width, height, 0, 0);
+    }
+
+    /**
+     * Decode an image of which the pixel size is known so it fits within the given size, keeping its aspect ratio.
+     *
+     * @param file         The image file to decode.
+     * @param width        The maximum width to decode at.
+     * @param height       The maximum height to decode at.
+     * @param sourceWidth  The width of the image. (0 or less if unknown.)
+     * @param sourceHeight The height of the image. (0 or less if unknown.)
+     * @return Returns null or an image in the error state if the file couldn't be decoded.
+     */
+    public static Image decode(File file, double width, double height, double sourceWidth, double sourceHeight) {
+        var start = System.nanoTime();
+        var image = getBackend(file, sourceWidth, sourceHeight).decode(file, width, height);
+        record(image, start);
+        return image;
+    }
+
+    /**
+     * Decode a small preview of an image as fast as possible, for thumbnails and for showing something while the slide
+     * itself is decoded. A thumbnail embedded in the file is used if it is big enough; otherwise JPEGs are decoded by
+     * JavaFX, which scales them down while decoding at a fraction of the cost of a full decode, and other formats by
+     * ImageIO, which skips the rows and columns it doesn't need.
+     *
+     * @param file         The image file to decode.
+     * @param size         The longest edge of the preview in pixels.
+     * @param sourceWidth  The width of the image. (0 or less if unknown.)
+     * @param sourceHeight The height of the image. (0 or less if unknown.)
+     * @return Returns null or an image in the error state if the file couldn't be decoded.
+     */
+    public static Image decodePreview(File file, int size, double sourceWidth, double sourceHeight) {
+        var start = System.nanoTime();
+        var image = readEmbeddedThumbnail(file, size);
+        if (image == null) {
+            var extension = getExtension(file.getName());
+            var previewBackend = extension.equals("jpg") || extension.equals("jpeg") ? getBackend(file, sourceWidth, sourceHeight) : imageIoBackend;
+            image = previewBackend.decode(file, size, size);
+        }
+        record(image, start);
+        return image;
+    }
+
+    /**
+     * Decode a rectangle of an image at a reduced size, for example one tile of a TilePyramid. Only the rows and columns
+     * of the rectangle are kept while reading, so this works for images far too big to decode whole. This always
+     * decodes with ImageIO.
+     *
+     * @param file   The image file to decode.
+     * @param region The rectangle to decode, in pixels of the image.
+     * @param width  The width to decode the rectangle at.
+     * @param height The height to decode the rectangle at.
+     * @return Returns null if the file couldn't be decoded.
+     */
+    public static Image decodeRegion(File file, Rectangle region, int width, int height) {
+        var start = System.nanoTime();
+        Image image;
+        try (var input = ImageIO.createImageInputStream(file)) {
+            image = input != null ? read(input, region, width, height) : null;
+        } catch (IOException | RuntimeException e) {
+            image = null;
+        }
+        record(image, start);
+        return image;
+    }
+
+    private static void record(Image image, long start) {
+        decodeTime.record(System.nanoTime() - start);
+        if (image == null || image.isError())
+            failedDecodeCount.increment();
+        else {
+            decodeCount.increment();
+            decodedPixels.add((long) image.getWidth() * (long) image.getHeight());
+        }
+    }
+
+    /**
+     * Get the amount of images decoded since the start.
+     *
+     * @return Returns the count, not counting failed decodes.
+     */
+    public static long getDecodeCount() {
+        return decodeCount.get();
+    }
+
+    /**
+     * Get the amount of decodes that failed since the start.
+     *
+     * @return Returns the count.
+     */
+    public static long getFailedDecodeCount() {
+        return failedDecodeCount.get();
+    }
+
+    /**
+     * Get the amount of pixels decoded since the start.
+     *
+     * @return Returns the pixel count.
+     */
+    public static long getDecodedPixels() {
+        return decodedPixels.get();
+    }
+
+    /**
+     * Get the time spent decoding since the start, summed over all decode threads.
+     *
+     * @return Returns the time in nanoseconds.
+     */
+    public static long getDecodeNanos() {
+        return decodeTime.getTotal();
+    }
+
+    /**
+     * Get the backend images are decoded with. This is JavaFX unless the imageviewer.decoder system property is set to
+     * "imageio".
+     *
+     * @return Returns the backend.
+     */
+    public static Backend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Set the backend images are decoded with.
+     *
+     * @param backend The backend to use.
+     */
+    public static void setBackend(Backend backend) {
+        ImageDecoder.backend = backend;
+    }
+
+    private static Image decodeWithImageIO(File file, double width, double height) {
+        try (var input = ImageIO.createImageInputStream(file)) {
+            return input != null ? read(input, null, width, height) : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Read an image, or a rectangle of it, so it fits within the given size.
+     *
+     * @param region The rectangle to read, null for the whole image.
+     */
+    private static Image read(ImageInputStream input, Rectangle region, double width, double height) throws IOException {
+        var readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) return null;
+
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            if (region == null) region = new Rectangle(reader.getWidth(0), reader.getHeight(0));
+            var scale = Math.min(1.0, Math.min(width / region.width, height / region.height));
+            var targetWidth = Math.max(1, (int) Math.round(region.width * scale));
+            var targetHeight = Math.max(1, (int) Math.round(region.height * scale));
+
+            // Let the reader skip pixels of images much bigger than needed, but keep twice the target size so the
+            // smooth scaling below still has something to work with.
+            var subsampling = Math.max(1, Math.min(region.width / (2 * targetWidth), region.height / (2 * targetHeight)));
+            var param = reader.getDefaultReadParam();
+            param.setSourceRegion(region);
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            return toImage(reader.read(0, param), targetWidth, targetHeight);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Read the thumbnail some files carry along with the image, like the ones cameras put in their JPEGs.
+     *
+     * @param size The longest edge to scale the thumbnail down to.
+     * @return Returns null if there is none or its longest edge is less than half the size.
+     */
+    private static Image readEmbeddedThumbnail(File file, int size) {
+        try (var input = ImageIO.createImageInputStream(file)) {
+            var readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) return null;
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, false);
+                if (!reader.readerSupportsThumbnails() || !reader.hasThumbnails(0)) return null;
+
+                var thumbnail = reader.readThumbnail(0, 0);
+                var longestEdge = Math.max(thumbnail.getWidth(), thumbnail.getHeight());
+                if (longestEdge * 2 < size) return null;
+
+                var scale = Math.min(1.0, (double) size / longestEdge);
+                return toImage(thumbnail, Math.max(1, (int) Math.round(thumbnail.getWidth() * scale)),
+                        Math.max(1, (int) Math.round(thumbnail.getHeight() * scale)));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Scale an image read by ImageIO smoothly and hand its pixels to JavaFX.
+     */
+    private static Image toImage(BufferedImage read, int targetWidth, int targetHeight) {
+        var scaled = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+        var graphics = scaled.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(read, 0, 0, targetWidth, targetHeight, null);
+        graphics.dispose();
+
+        var pixels = ((DataBufferInt) scaled.getRaster().getDataBuffer()).getData();
+        var image = new WritableImage(targetWidth, targetHeight);
+        image.getPixelWriter().setPixels(0, 0, targetWidth, targetHeight, PixelFormat.getIntArgbPreInstance(), pixels, 0, targetWidth);
+        return image;
+    }
+
+    private static double roundUpToStep(double size) {
+        return Math.max(decodeSizeStep, Math.ceil(size / decodeSizeStep) * decodeSizeStep);
+    }
+}
@@ -0,0 +1,124 @@
+package bll;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Presents slides in an ImageView. Images handed over from any thread are applied on the next FX pulse, right before
+ * the frame is rendered; if several arrive within one frame only the newest is shown. Previews are shown the same way,
+ * the image view scales them up to the size of the slide.
+ */
+public class ImageViewPresenter implements SlidePresenter {
+
+    // Stop the timer after this many pulses without a new image, so an idle slideshow costs nothing per frame.
+    private static final int idlePulsesBeforeStop = 60;
+
+    private final ImageView imageView;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram perceivedLatency = new LatencyHistogram();
+    private final AtomicReference<PendingImage> pendingImage = new AtomicReference<>();
+    private final AtomicBoolean timerRunning = new AtomicBoolean();
+    private final AnimationTimer pulseTimer;
+    private int idlePulses;
+    // The due time of the last slide of which something was shown, to tell a slide's first image from its refinement.
+    private long firstShownDueTime;
+
+    public ImageViewPresenter(ImageView imageView) {
+        this.imageView = imageView;
+        pulseTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                onPulse();
+            }
+        };
+    }
+
+    @Override
+    public void present(Image image, long dueTime) {
+        hand(new PendingImage(image, dueTime, false));
+    }
+
+    @Override
+    public boolean showsPreviews() {
+        return true;
+    }
+
+    @Override
+    public void presentPreview(Image preview, long dueTime) {
+        hand(new PendingImage(preview, dueTime, true));
+    }
+
+    private void hand(PendingImage pending) {
+        pendingImage.set(pending);
+        if (timerRunning.compareAndSet(false, true)) {
+            if (Platform.isFxApplicationThread()) pulseTimer.start();
+            else Platform.runLater(pulseTimer::start);
+        }
+    }
+
+    private void onPulse() {
+        var pending = pendingImage.getAndSet(null);
+        if (pending != null) {
+            idlePulses = 0;
+            imageView.setImage(pending.image);
+            var latencyNanos = System.nanoTime() - pending.dueTime;
+            if (pending.dueTime != firstShownDueTime) {
+                firstShownDueTime = pending.dueTime;
+                perceivedLatency.record(latencyNanos);
+                SlidePresenter.recordFirstShown(latencyNanos, pending.preview);
+            }
+            if (!pending.preview) {
+                latency.record(latencyNanos);
+                SlidePresenter.recordShown(latencyNanos);
+            }
+            StartupTimer.getInstance().mark(StartupTimer.Phase.FIRST_PAINT);
+            return;
+        }
+
+        if (++idlePulses >= idlePulsesBeforeStop) {
+            idlePulses = 0;
+            timerRunning.set(false);
+            pulseTimer.stop();
+
+            // An image may have been handed over after this pulse looked, it saw the timer still running.
+            if (pendingImage.get() != null && timerRunning.compareAndSet(false, true))
+                pulseTimer.start();
+        }
+    }
+
+    /**
+     * Get the image view the slides are shown in.
+     *
+     * @return Returns the image view.
+     */
+    public ImageView getImageView() {
+        return imageView;
+    }
+
+    @Override
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public LatencyHistogram getPerceivedLatency() {
+        return perceivedLatency;
+    }
+
+    private static class PendingImage {
+        private final Image image;
+        private final long dueTime;
+        private final boolean preview;
+
+        PendingImage(Image image, long dueTime, boolean preview) {
+            this.image = image;
+            this.dueTime = dueTime;
+            this.preview = preview;
+        }
+    }
+}
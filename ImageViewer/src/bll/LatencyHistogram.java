@@ -0,0 +1,132 @@
+package bll;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of durations in nanoseconds. Values are counted in buckets that are 1/8th of a power of two wide,
+ * so percentiles are accurate to about 12%.
+ */
+public class LatencyHistogram {
+
+    private static final int subBucketBits = 3;
+    private static final int subBucketCount = 1 << subBucketBits;
+    private static final int bucketCount = (64 - subBucketBits) * subBucketCount;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(bucketCount);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a duration.
+     *
+     * @param nanos The duration in nanoseconds. (Negative durations are counted as 0.)
+     */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        buckets.incrementAndGet(bucketIndex(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Get the amount of recorded durations.
+     *
+     * @return Returns the count.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Get the mean of the recorded durations.
+     *
+     * @return Returns the mean in nanoseconds or 0 if nothing was recorded.
+     */
+    public long getMean() {
+        var n = count.get();
+        return n > 0 ? total.get() / n : 0;
+    }
+
+    /**
+     * Get the sum of the recorded durations.
+     *
+     * @return Returns the total in nanoseconds.
+     */
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * Get the longest recorded duration.
+     *
+     * @return Returns the maximum in nanoseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get a percentile of the recorded durations.
+     *
+     * @param percentile The percentile to get. (0 - 100.)
+     * @return Returns the upper bound of the bucket the percentile falls in, in nanoseconds, or 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        var n = count.get();
+        if (n == 0) return 0;
+
+        var rank = (long) Math.ceil(n * Math.min(100, Math.max(0, percentile)) / 100.0);
+        var seen = 0L;
+        for (int i = 0; i < bucketCount; i++) {
+            seen += buckets.get(i);
+            if (seen >= Math.max(1, rank))
+                return Math.min(bucketUpperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * Forget all recorded durations.
+     */
+    public void reset() {
+        for (int i = 0; i < bucketCount; i++) buckets.set(i, 0);
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Summarize the histogram in milliseconds.
+     *
+     * @return Returns the count, mean, p50, p90, p99 and max.
+     */
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.2fms p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms", getCount(),
+                toMillis(getMean()), toMillis(getPercentile(50)), toMillis(getPercentile(90)),
+                toMillis(getPercentile(99)), toMillis(getMax()));
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < subBucketCount) return (int) value;
+        var exponent = 63 - Long.numberOfLeadingZeros(value);
+        var subBucket = (int) (value >>> (exponent - subBucketBits)) & (subBucketCount - 1);
+        return (exponent - subBucketBits + 1) * subBucketCount + subBucket;
+    }
+
+    private static long bucketUpperBound(int index) {
+        if (index < subBucketCount) return index;
+        var exponent = index / subBucketCount + subBucketBits - 1;
+        var subBucket = index % subBucketCount;
+        if (exponent >= 62) return Long.MAX_VALUE;
+        return ((long) (subBucketCount + subBucket + 1) << (exponent - subBucketBits)) - 1;
+    }
+}
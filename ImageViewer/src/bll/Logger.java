@@ -1,14 +1,289 @@
 package bll;
 
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A leveled logger that writes on its own thread, so logging never waits on the console. Messages are formatted by the
+ * writer thread, and a message below the log level is dropped before anything is allocated for it. (Arguments of
+ * primitive types are still boxed by the caller, check isEnabled() first in hot loops.) If messages come in faster than
+ * they can be written, the excess is dropped and counted rather than slowing down the caller.
+ * <p>
+ * The level is INFO unless the imageviewer.logLevel system property says otherwise.
+ */
 public class Logger {
+
+    /**
+     * The levels of log messages, from least to most important.
+     */
+    public enum Level {
+        DEBUG,
+        INFO,
+        WARN,
+        ERROR,
+        /**
+         * Only for setLevel(), logs nothing.
+         */
+        OFF
+    }
+
+    /**
+     * The amount of messages that can wait for the writer thread.
+     */
+    public static final int queueCapacity = 8192;
+
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(queueCapacity);
+    private final LongAdder droppedCount = new LongAdder();
+    private final PrintStream out;
+    private volatile Level level;
+    private final AtomicLong enqueuedCount = new AtomicLong();
+    private volatile long writtenCount;
+    private long reportedDroppedCount;
+
     private static Logger instance;
 
-    public static Logger getInstance() {
-        if (instance == null) instance = new Logger();
-        return instance;
+    public Logger() {
+        this(System.out, parseLevel(System.getProperty("imageviewer.logLevel"), Level.INFO));
     }
 
+    public Logger(PrintStream out, Level level) {
+        this.out = out;
+        this.level = level;
+
+        var writer = new Thread(this::write, "logger");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Are messages of a level logged?
+     *
+     * @param level The level of the messages.
+     * @return Returns true if yes otherwise false.
+     */
+    public boolean isEnabled(Level level) {
+        return level != Level.OFF && level.ordinal() >= this.level.ordinal();
+    }
+
+    /**
+     * Get the level below which messages are dropped.
+     *
+     * @return Returns the level.
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Set the level below which messages are dropped.
+     *
+     * @param level The level to use.
+     */
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+
+    /**
+     * Log a message at INFO level.
+     *
+     * @param txt The message.
+     */
     public void log(String txt) {
-        System.out.println(String.format("[%s]: %s", getClass().getSimpleName(), txt));
+        if (isEnabled(Level.INFO)) enqueue(Level.INFO, txt, null);
+    }
+
+    /**
+     * Log a message at a level. The message is formatted with String.format() on the writer thread.
+     *
+     * @param level  The level of the message.
+     * @param format The format of the message.
+     * @param args   The arguments of the format.
+     */
+    public void log(Level level, String format, Object... args) {
+        if (isEnabled(level)) enqueue(level, format, args);
+    }
+
+    public void debug(String message) {
+        if (isEnabled(Level.DEBUG)) enqueue(Level.DEBUG, message, null);
+    }
+
+    public void debug(String format, Object arg) {
+        if (isEnabled(Level.DEBUG)) enqueue(Level.DEBUG, format, new Object[]{arg});
+    }
+
+    public void debug(String format, Object arg1, Object arg2) {
+        if (isEnabled(Level.DEBUG)) enqueue(Level.DEBUG, format, new Object[]{arg1, arg2});
+    }
+
+    public void info(String message) {
+        if (isEnabled(Level.INFO)) enqueue(Level.INFO, message, null);
+    }
+
+    public void info(String format, Object arg) {
+        if (isEnabled(Level.INFO)) enqueue(Level.INFO, format, new Object[]{arg});
+    }
+
+    public void info(String format, Object arg1, Object arg2) {
+        if (isEnabled(Level.INFO)) enqueue(Level.INFO, format, new Object[]{arg1, arg2});
+    }
+
+    public void warn(String message) {
+        if (isEnabled(Level.WARN)) enqueue(Level.WARN, message, null);
+    }
+
+    public void warn(String format, Object arg) {
+        if (isEnabled(Level.WARN)) enqueue(Level.WARN, format, new Object[]{arg});
+    }
+
+    public void warn(String format, Object arg1, Object arg2) {
+        if (isEnabled(Level.WARN)) enqueue(Level.WARN, format, new Object[]{arg1, arg2});
+    }
+
+    public void error(String message) {
+        if (isEnabled(Level.ERROR)) enqueue(Level.ERROR, message, null);
+    }
+
+    public void error(String format, Object arg) {
+        if (isEnabled(Level.ERROR)) enqueue(Level.ERROR, format, new Object[]{arg});
+    }
+
+    public void error(String format, Object arg1, Object arg2) {
+        if (isEnabled(Level.ERROR)) enqueue(Level.ERROR, format, new Object[]{arg1, arg2});
+    }
+
+    private void enqueue(Level level, String format, Object[] args) {
+        if (queue.offer(new Entry(level, System.currentTimeMillis(), Thread.currentThread().getName(), format, args)))
+            enqueuedCount.incrementAndGet();
+        else
+            droppedCount.increment();
+    }
+
+    /**
+     * Wait until the messages logged so far are written.
+     *
+     * @param timeoutMillis How long to wait at most.
+     */
+    public void flush(long timeoutMillis) {
+        var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        var target = enqueuedCount.get();
+        try {
+            while (writtenCount < target && System.nanoTime() < deadline)
+                Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get the amount of messages waiting to be written.
+     *
+     * @return Returns the queue length.
+     */
+    public int getQueueLength() {
+        return queue.size();
+    }
+
+    /**
+     * Get the amount of messages dropped because they came in faster than they could be written.
+     *
+     * @return Returns the count.
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    private void write() {
+        var line = new StringBuilder();
+        while (true) {
+            Entry entry;
+            try {
+                entry = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            var written = 0;
+            for (; entry != null; entry = queue.poll()) {
+                line.setLength(0);
+                format(line, entry);
+                out.println(line);
+                written++;
+            }
+
+            var dropped = droppedCount.sum();
+            if (dropped != reportedDroppedCount) {
+                out.println(String.format("Dropped %d log messages.", dropped - reportedDroppedCount));
+                reportedDroppedCount = dropped;
+            }
+            out.flush();
+            writtenCount += written;
+        }
+    }
+
+    private static void format(StringBuilder line, Entry entry) {
+        line.append(String.format(Locale.ROOT, "%tT.%<tL %-5s [%s]: ", entry.time, entry.level, entry.threadName));
+        try {
+            line.append(entry.args == null ? entry.format : String.format(entry.format, entry.args));
+        } catch (RuntimeException e) {
+            line.append(entry.format).append(" (").append(e).append(')');
+        }
+    }
+
+    /**
+     * Get the stack trace of an exception as text, to log it as an argument instead of printing it to the console.
+     *
+     * @param e The exception.
+     * @return Returns the stack trace, one frame per line.
+     */
+    public static String getStackTrace(Throwable e) {
+        var trace = new StringWriter();
+        e.printStackTrace(new PrintWriter(trace));
+        return trace.toString().stripTrailing();
+    }
+
+    private static Level parseLevel(String name, Level defaultLevel) {
+        if (name == null) return defaultLevel;
+        try {
+            return Level.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return defaultLevel;
+        }
+    }
+
+    /**
+     * Get the singleton instance. Messages still waiting when the JVM exits are written first.
+     */
+    public static synchronized Logger getInstance() {
+        if (instance == null) {
+            var logger = new Logger();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> logger.flush(1000), "logger-flush"));
+            Metrics.getInstance().gauge("logger.queue", logger::getQueueLength);
+            Metrics.getInstance().gauge("logger.dropped", logger::getDroppedCount);
+            instance = logger;
+        }
+        return instance;
+    }
+
+    private static class Entry {
+        private final Level level;
+        private final long time;
+        private final String threadName;
+        private final String format;
+        private final Object[] args;
+
+        Entry(Level level, long time, String threadName, String format, Object[] args) {
+            this.level = level;
+            this.time = time;
+            this.threadName = threadName;
+            this.format = format;
+            this.args = args;
+        }
     }
 }
@@ -0,0 +1,352 @@
+package bll;
+
+import be.SlideshowInstance;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Makes a running image viewer visible to JMX tools such as JConsole and VisualVM. The viewer as a whole is registered
+ * as ImageViewer:type=Viewer and each slideshow as ImageViewer:type=Slideshow,id=n, for as long as it takes part in
+ * the instance rotation. Set the imageviewer.jmx system property to false to register nothing.
+ */
+public class Management {
+
+    /**
+     * The JMX domain the image viewer's beans are registered in.
+     */
+    public static final String domain = "ImageViewer";
+
+    private static SlideshowInstanceManager exportedManager;
+
+    private Management() {
+
+    }
+
+    /**
+     * Register the viewer bean and a bean for each slideshow of an instance manager. Slideshows added later are
+     * registered when they are added. Only one instance manager can be exported.
+     *
+     * @param manager The instance manager of the running viewer.
+     */
+    public static synchronized void export(SlideshowInstanceManager manager) {
+        if (exportedManager != null || !Boolean.parseBoolean(System.getProperty("imageviewer.jmx", "true"))) return;
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Viewer(manager), new ObjectName(domain + ":type=Viewer"));
+        } catch (JMException e) {
+            Logger.getInstance().warn("Couldn't register the viewer with JMX: %s", e);
+            return;
+        }
+
+        exportedManager = manager;
+        manager.setExported(true);
+        for (var slideshowInstance : manager.getSlideshowInstances())
+            register(slideshowInstance);
+    }
+
+    /**
+     * Register the bean of a slideshow.
+     *
+     * @param slideshowInstance The slideshow.
+     */
+    static void register(SlideshowInstance slideshowInstance) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Slideshow(slideshowInstance), getObjectName(slideshowInstance));
+        } catch (JMException e) {
+            Logger.getInstance().warn("Couldn't register slideshow %s with JMX: %s", slideshowInstance.getId(), e);
+        }
+    }
+
+    /**
+     * Unregister the bean of a slideshow.
+     *
+     * @param slideshowInstance The slideshow.
+     */
+    static void unregister(SlideshowInstance slideshowInstance) {
+        try {
+            var server = ManagementFactory.getPlatformMBeanServer();
+            var name = getObjectName(slideshowInstance);
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+        } catch (JMException e) {
+            Logger.getInstance().warn("Couldn't unregister slideshow %s from JMX: %s", slideshowInstance.getId(), e);
+        }
+    }
+
+    private static ObjectName getObjectName(SlideshowInstance slideshowInstance) throws JMException {
+        return new ObjectName(String.format("%s:type=Slideshow,id=%d", domain, slideshowInstance.getId()));
+    }
+
+    private static class Slideshow implements SlideshowMXBean {
+        private final SlideshowInstance slideshowInstance;
+        private final SlideshowManager manager;
+
+        Slideshow(SlideshowInstance slideshowInstance) {
+            this.slideshowInstance = slideshowInstance;
+            manager = slideshowInstance.getSlideshowManager();
+        }
+
+        @Override
+        public long getId() {
+            return slideshowInstance.getId();
+        }
+
+        @Override
+        public int getSlideCount() {
+            return manager.getSlides().size();
+        }
+
+        @Override
+        public int getCurrentSlideIndex() {
+            return manager.getCurrentSlideIndex();
+        }
+
+        @Override
+        public String getCurrentSlidePath() {
+            var slide = manager.getCurrentSlide();
+            return slide != null ? slide.getFilePath() : "";
+        }
+
+        @Override
+        public boolean isStarted() {
+            return manager.isSlideshowStarted();
+        }
+
+        @Override
+        public boolean isPaused() {
+            return manager.isPaused();
+        }
+
+        @Override
+        public boolean isActive() {
+            return slideshowInstance.isActive();
+        }
+
+        @Override
+        public double getSlideShowDelay() {
+            return manager.getSlideShowDelay();
+        }
+
+        @Override
+        public void setSlideShowDelay(double seconds) {
+            manager.setSlideShowDelay(seconds);
+        }
+
+        @Override
+        public long getDecodedBytesHeld() {
+            var playlist = manager.getSlides();
+            return ImageCache.getInstance().getBytesHeld(playlist::contains);
+        }
+
+        @Override
+        public String getLatency() {
+            var presenter = manager.getPresenter();
+            return presenter != null ? presenter.getLatency().toString() : "";
+        }
+
+        @Override
+        public String getPerceivedLatency() {
+            var presenter = manager.getPresenter();
+            return presenter != null ? presenter.getPerceivedLatency().toString() : "";
+        }
+
+        @Override
+        public String getDeadlinePolicy() {
+            return manager.getDeadlinePolicy().name();
+        }
+
+        @Override
+        public void setDeadlinePolicy(String policy) {
+            manager.setDeadlinePolicy(SlideshowManager.DeadlinePolicy.valueOf(policy.toUpperCase(Locale.ROOT)));
+        }
+
+        @Override
+        public long getMissedDeadlineCount() {
+            return manager.getMissedDeadlineCount();
+        }
+
+        @Override
+        public void start() {
+            manager.start();
+        }
+
+        @Override
+        public void stop() {
+            manager.stop();
+        }
+
+        @Override
+        public void pause() {
+            manager.pause();
+        }
+
+        @Override
+        public void resume() {
+            manager.unpause();
+        }
+
+        @Override
+        public void next() {
+            manager.next();
+        }
+
+        @Override
+        public void previous() {
+            manager.previous();
+        }
+
+        @Override
+        public void jumpTo(int index) {
+            manager.jumpTo(index);
+        }
+    }
+
+    private static class Viewer implements ViewerMXBean {
+        private final SlideshowInstanceManager manager;
+
+        Viewer(SlideshowInstanceManager manager) {
+            this.manager = manager;
+        }
+
+        @Override
+        public int getInstanceCount() {
+            return manager.getSlideshowInstances().size();
+        }
+
+        @Override
+        public String getRotationState() {
+            return manager.getState().name();
+        }
+
+        @Override
+        public long getCurrentInstanceId() {
+            var current = manager.getCurrentSlideshow();
+            return current != null ? current.getId() : 0;
+        }
+
+        @Override
+        public long[] getPlayingInstanceIds() {
+            return manager.getPlayingSlideshows().stream().mapToLong(SlideshowInstance::getId).toArray();
+        }
+
+        @Override
+        public int getMaxPlayingInstances() {
+            return manager.getMaxPlayingInstances();
+        }
+
+        @Override
+        public void setMaxPlayingInstances(int count) {
+            manager.setMaxPlayingInstances(count);
+        }
+
+        @Override
+        public double getInstanceShowTime() {
+            return SlideshowInstanceManager.instanceShowTime;
+        }
+
+        @Override
+        public void setInstanceShowTime(double seconds) {
+            if (seconds > 0) SlideshowInstanceManager.instanceShowTime = seconds;
+        }
+
+        @Override
+        public int getThreadCount() {
+            return ManagementFactory.getThreadMXBean().getThreadCount();
+        }
+
+        @Override
+        public int getPeakThreadCount() {
+            return ManagementFactory.getThreadMXBean().getPeakThreadCount();
+        }
+
+        @Override
+        public long getCacheBytesHeld() {
+            return ImageCache.getInstance().getBytesHeld();
+        }
+
+        @Override
+        public long getCacheByteBudget() {
+            return ImageCache.getInstance().getByteBudget();
+        }
+
+        @Override
+        public void setCacheByteBudget(long bytes) {
+            if (bytes >= 0) ImageCache.getInstance().setByteBudget(bytes);
+        }
+
+        @Override
+        public int getCacheEntryCount() {
+            return ImageCache.getInstance().getEntryCount();
+        }
+
+        @Override
+        public long getCacheHitCount() {
+            return ImageCache.getInstance().getHitCount();
+        }
+
+        @Override
+        public long getCacheMissCount() {
+            return ImageCache.getInstance().getMissCount();
+        }
+
+        @Override
+        public long getCacheEvictionCount() {
+            return ImageCache.getInstance().getEvictionCount();
+        }
+
+        @Override
+        public int getDecodeQueueLength() {
+            return SlideLoader.getInstance().getQueueLength();
+        }
+
+        @Override
+        public Map<String, Long> getMetrics() {
+            var values = new TreeMap<String, Long>();
+            Metrics.getInstance().getCounters().forEach((name, counter) -> values.put(name, counter.get()));
+            Metrics.getInstance().getGauges().forEach((name, gauge) -> values.put(name, gauge.getAsLong()));
+            return values;
+        }
+
+        @Override
+        public Map<String, String> getLatencies() {
+            var values = new TreeMap<String, String>();
+            Metrics.getInstance().getHistograms().forEach((name, histogram) -> values.put(name, histogram.toString()));
+            return values;
+        }
+
+        @Override
+        public String getLogLevel() {
+            return Logger.getInstance().getLevel().name();
+        }
+
+        @Override
+        public void setLogLevel(String level) {
+            Logger.getInstance().setLevel(Logger.Level.valueOf(level.trim().toUpperCase(Locale.ROOT)));
+        }
+
+        @Override
+        public void trimCache(long maxBytes) {
+            ImageCache.getInstance().trim(Math.max(0, maxBytes));
+        }
+
+        @Override
+        public void clearCache() {
+            ImageCache.getInstance().clear();
+        }
+
+        @Override
+        public void pauseAll() {
+            for (var slideshowInstance : manager.getSlideshowInstances())
+                slideshowInstance.getSlideshowManager().pause();
+        }
+
+        @Override
+        public void resumeAll() {
+            manager.resumeAll();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package bll;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters, gauges and latency histograms of the image viewer by name, cheap enough to always keep. Code that updates a
+ * metric often looks it up once and keeps it; counting is then a LongAdder increment and a histogram record a few
+ * atomic adds, without locks or allocation. Gauges are read from their owner only when the metrics are read.
+ */
+public class Metrics {
+
+    /**
+     * A count that only goes up.
+     */
+    public static class Counter {
+        private final LongAdder count = new LongAdder();
+
+        public void increment() {
+            count.increment();
+        }
+
+        public void add(long amount) {
+            count.add(amount);
+        }
+
+        /**
+         * Get the count.
+         *
+         * @return Returns the count.
+         */
+        public long get() {
+            return count.sum();
+        }
+    }
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    private static Metrics instance;
+
+    public Metrics() {
+
+    }
+
+    /**
+     * Get a counter, creating it the first time.
+     *
+     * @param name The name of the counter, for example "decode.count".
+     * @return Returns the counter.
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    /**
+     * Get a latency histogram, creating it the first time.
+     *
+     * @param name The name of the histogram, for example "decode.time".
+     * @return Returns the histogram.
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Register a gauge, a value that is read from its owner when the metrics are read. A gauge of the same name is
+     * replaced.
+     *
+     * @param name  The name of the gauge, for example "decode.queue".
+     * @param value Reads the value, must be thread safe.
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Read a gauge.
+     *
+     * @param name The name of the gauge.
+     * @return Returns 0 if there is no such gauge.
+     */
+    public long getGauge(String name) {
+        var gauge = gauges.get(name);
+        return gauge != null ? gauge.getAsLong() : 0;
+    }
+
+    /**
+     * Get the counters by name.
+     *
+     * @return Returns a sorted copy.
+     */
+    public Map<String, Counter> getCounters() {
+        return new TreeMap<>(counters);
+    }
+
+    /**
+     * Get the gauges by name.
+     *
+     * @return Returns a sorted copy.
+     */
+    public Map<String, LongSupplier> getGauges() {
+        return new TreeMap<>(gauges);
+    }
+
+    /**
+     * Get the latency histograms by name.
+     *
+     * @return Returns a sorted copy.
+     */
+    public Map<String, LatencyHistogram> getHistograms() {
+        return new TreeMap<>(histograms);
+    }
+
+    /**
+     * List all metrics, one per line, sorted by name.
+     *
+     * @return Returns the current values.
+     */
+    @Override
+    public String toString() {
+        var lines = new TreeMap<String, String>();
+        counters.forEach((name, counter) -> lines.put(name, Long.toString(counter.get())));
+        gauges.forEach((name, gauge) -> lines.put(name, Long.toString(gauge.getAsLong())));
+        histograms.forEach((name, histogram) -> lines.put(name, histogram.toString()));
+
+        var text = new StringBuilder();
+        lines.forEach((name, value) -> text.append(name).append(' ').append(value).append(System.lineSeparator()));
+        return text.toString();
+    }
+
+    /**
+     * Get the singleton instance.
+     */
+    public static synchronized Metrics getInstance() {
+        return instance == null ? instance = new Metrics() : instance;
+    }
+}
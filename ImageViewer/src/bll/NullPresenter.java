@@ -0,0 +1,60 @@
+package bll;
+
+import javafx.scene.image.Image;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A presenter without a screen, for running slideshows headless. Slides count as shown the moment they are handed over,
+ * so its latency is the time from a slide being due until it was decoded.
+ */
+public class NullPresenter implements SlidePresenter {
+
+    private final LatencyHistogram latency;
+    private final AtomicLong presentedCount = new AtomicLong();
+    private final AtomicLong presentedPixels = new AtomicLong();
+
+    public NullPresenter() {
+        this(new LatencyHistogram());
+    }
+
+    /**
+     * @param latency The histogram to record the latency in, several presenters may share one.
+     */
+    public NullPresenter(LatencyHistogram latency) {
+        this.latency = latency;
+    }
+
+    @Override
+    public void present(Image image, long dueTime) {
+        var latencyNanos = System.nanoTime() - dueTime;
+        latency.record(latencyNanos);
+        SlidePresenter.recordShown(latencyNanos);
+        SlidePresenter.recordFirstShown(latencyNanos, false);
+        presentedCount.incrementAndGet();
+        presentedPixels.addAndGet((long) image.getWidth() * (long) image.getHeight());
+    }
+
+    /**
+     * Get the amount of slides shown.
+     *
+     * @return Returns the count.
+     */
+    public long getPresentedCount() {
+        return presentedCount.get();
+    }
+
+    /**
+     * Get the amount of pixels of the slides shown.
+     *
+     * @return Returns the pixel count.
+     */
+    public long getPresentedPixels() {
+        return presentedPixels.get();
+    }
+
+    @Override
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
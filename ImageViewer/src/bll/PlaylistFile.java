@@ -0,0 +1,199 @@
+package bll;
+
+import be.Playlist;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Saves and opens slideshows. A playlist file holds the slides in order with the file information they were added
+ * with, so opening one neither touches nor re-reads the image files; a file that changed or went missing is noticed
+ * when its slide gets decoded.
+ * <p>
+ * The file is a header followed by the file sizes, modification times, widths and heights as big-endian columns and
+ * then the paths, each stored as the length of the prefix it shares with the previous path plus the rest in UTF-8.
+ * It's memory-mapped when opened and each column is read with one bulk copy.
+ */
+public class PlaylistFile {
+
+    /**
+     * The file extension of playlist files, without the dot.
+     */
+    public static final String fileExtension = "ivpl";
+
+    private static final int fileMagic = 0x4956504C; // IVPL
+    private static final int fileVersion = 1;
+    // Magic, version, slide count, current slide index, slideshow delay.
+    private static final int headerBytes = 4 + 4 + 4 + 4 + 8;
+
+    private final int slideCount;
+    private final int currentSlideIndex;
+    private final double slideShowDelay;
+
+    private PlaylistFile(int slideCount, int currentSlideIndex, double slideShowDelay) {
+        this.slideCount = slideCount;
+        this.currentSlideIndex = currentSlideIndex;
+        this.slideShowDelay = slideShowDelay;
+    }
+
+    /**
+     * Save a playlist. The file is replaced at once, so a failed save leaves the previous one intact.
+     *
+     * @param file              The file to save to.
+     * @param playlist          The slides to save.
+     * @param currentSlideIndex The index of the shown slide.
+     * @param slideShowDelay    The slideshow delay in seconds.
+     * @throws IOException If the file couldn't be written.
+     */
+    public static void save(Path file, Playlist playlist, int currentSlideIndex, double slideShowDelay) throws IOException {
+        var parent = file.toAbsolutePath().getParent();
+        var temporary = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+                // Hold the playlist still while it's written.
+                synchronized (playlist) {
+                    write(out, playlist, currentSlideIndex, slideShowDelay);
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void write(DataOutputStream out, Playlist playlist, int currentSlideIndex, double slideShowDelay) throws IOException {
+        var count = playlist.size();
+        out.writeInt(fileMagic);
+        out.writeInt(fileVersion);
+        out.writeInt(count);
+        out.writeInt(currentSlideIndex);
+        out.writeDouble(slideShowDelay);
+
+        for (int i = 0; i < count; i++) out.writeLong(playlist.getFileSize(i));
+        for (int i = 0; i < count; i++) out.writeLong(playlist.getLastModified(i));
+        for (int i = 0; i < count; i++) out.writeInt(playlist.getSourceWidth(i));
+        for (int i = 0; i < count; i++) out.writeInt(playlist.getSourceHeight(i));
+
+        // Slides of the same folder share most of their path, only the rest is written.
+        var previous = new byte[0];
+        for (int i = 0; i < count; i++) {
+            var path = playlist.getFilePath(i).getBytes(StandardCharsets.UTF_8);
+            var shared = Arrays.mismatch(previous, path);
+            if (shared < 0) shared = path.length;
+            writeVarInt(out, shared);
+            writeVarInt(out, path.length - shared);
+            out.write(path, shared, path.length - shared);
+            previous = path;
+        }
+    }
+
+    /**
+     * Open a playlist, replacing the slides of a playlist with the saved ones.
+     *
+     * @param file     The file to open.
+     * @param playlist The playlist to fill.
+     * @return Returns the saved slideshow settings.
+     * @throws IOException If the file couldn't be read or isn't a playlist file.
+     */
+    public static PlaylistFile open(Path file, Playlist playlist) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var size = channel.size();
+            if (size < headerBytes || size > Integer.MAX_VALUE)
+                throw new IOException(String.format("%s isn't a playlist file", file));
+
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != fileMagic || buffer.getInt() != fileVersion)
+                throw new IOException(String.format("%s isn't a playlist file", file));
+
+            var count = buffer.getInt();
+            var currentSlideIndex = buffer.getInt();
+            var slideShowDelay = buffer.getDouble();
+            if (count < 0 || (long) count * (8 + 8 + 4 + 4) > buffer.remaining())
+                throw new IOException(String.format("%s is damaged", file));
+
+            var fileSizes = new long[count];
+            var lastModified = new long[count];
+            var sourceWidths = new int[count];
+            var sourceHeights = new int[count];
+            buffer.asLongBuffer().get(fileSizes);
+            buffer.position(buffer.position() + count * 8);
+            buffer.asLongBuffer().get(lastModified);
+            buffer.position(buffer.position() + count * 8);
+            buffer.asIntBuffer().get(sourceWidths);
+            buffer.position(buffer.position() + count * 4);
+            buffer.asIntBuffer().get(sourceHeights);
+            buffer.position(buffer.position() + count * 4);
+
+            var paths = new String[count];
+            var path = new byte[256];
+            try {
+                for (int i = 0; i < count; i++) {
+                    var shared = readVarInt(buffer);
+                    var length = shared + readVarInt(buffer);
+                    if (length > path.length) path = Arrays.copyOf(path, Math.max(length, path.length * 2));
+                    buffer.get(path, shared, length - shared);
+                    paths[i] = new String(path, 0, length, StandardCharsets.UTF_8);
+                }
+            } catch (RuntimeException e) {
+                throw new IOException(String.format("%s is damaged", file), e);
+            }
+
+            playlist.setAll(paths, fileSizes, lastModified, sourceWidths, sourceHeights, count);
+            return new PlaylistFile(count, currentSlideIndex, slideShowDelay);
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        var value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            var b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalStateException("Malformed length");
+    }
+
+    /**
+     * Get the amount of slides in the file.
+     *
+     * @return Returns the slide count.
+     */
+    public int getSlideCount() {
+        return slideCount;
+    }
+
+    /**
+     * Get the index of the slide that was shown when the playlist was saved.
+     *
+     * @return Returns the index in the images array.
+     */
+    public int getCurrentSlideIndex() {
+        return currentSlideIndex;
+    }
+
+    /**
+     * Get the slideshow delay the playlist was saved with.
+     *
+     * @return Returns the delay in seconds.
+     */
+    public double getSlideShowDelay() {
+        return slideShowDelay;
+    }
+}
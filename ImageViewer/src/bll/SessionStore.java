@@ -0,0 +1,229 @@
+package bll;
+
+import be.SlideshowInstance;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Saves the open slideshow windows when the image viewer closes and hands them back on the next start, if session
+ * restore is turned on. Each window's slides go into their own playlist file, the windows themselves are described in
+ * session.properties.
+ */
+public class SessionStore {
+
+    /**
+     * The folder in the data folder the session is saved in.
+     */
+    public static final String sessionFolderName = "session";
+
+    private static final String propertiesFileName = "session.properties";
+
+    private final Path folder;
+    private final Properties properties = new Properties();
+
+    private static SessionStore instance;
+
+    public SessionStore() {
+        this(DataFolder.resolve(sessionFolderName));
+    }
+
+    public SessionStore(Path folder) {
+        this.folder = folder;
+        var file = folder.resolve(propertiesFileName);
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                Logger.getInstance().warn("Couldn't read the session: %s", e);
+            }
+        }
+    }
+
+    /**
+     * Is the session restored on start? Off unless turned on.
+     *
+     * @return Returns true if yes otherwise false.
+     */
+    public synchronized boolean isEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("enabled", "false"));
+    }
+
+    /**
+     * Turn restoring the session on start on or off. The choice is saved right away.
+     *
+     * @param enabled Whether to restore the session.
+     */
+    public synchronized void setEnabled(boolean enabled) {
+        properties.setProperty("enabled", Boolean.toString(enabled));
+        try {
+            writeProperties();
+        } catch (IOException e) {
+            Logger.getInstance().warn("Couldn't save the session setting: %s", e);
+        }
+    }
+
+    /**
+     * Save the slideshow windows. Must be called on the FX thread, it reads the window bounds. (Slideshows without a
+     * window are restored with the default bounds.)
+     *
+     * @param slideshowInstances The open slideshow windows.
+     */
+    public synchronized void save(List<SlideshowInstance> slideshowInstances) {
+        var enabled = isEnabled();
+        properties.clear();
+        properties.setProperty("enabled", Boolean.toString(enabled));
+
+        var count = 0;
+        for (var slideshowInstance : slideshowInstances) {
+            var manager = slideshowInstance.getSlideshowManager();
+            var bounds = slideshowInstance.getWindowBounds();
+            var playlist = getPlaylistFile(count);
+            try {
+                Files.createDirectories(folder);
+                manager.savePlaylist(playlist);
+            } catch (IOException e) {
+                Logger.getInstance().warn("Couldn't save the slides of a window: %s", e);
+                continue;
+            }
+
+            var prefix = "instance." + count + ".";
+            if (bounds != null) {
+                properties.setProperty(prefix + "x", Double.toString(bounds.getMinX()));
+                properties.setProperty(prefix + "y", Double.toString(bounds.getMinY()));
+                properties.setProperty(prefix + "width", Double.toString(bounds.getWidth()));
+                properties.setProperty(prefix + "height", Double.toString(bounds.getHeight()));
+            }
+            properties.setProperty(prefix + "maximized", Boolean.toString(slideshowInstance.isMaximized()));
+            properties.setProperty(prefix + "playing", Boolean.toString(manager.isSlideshowStarted() && !manager.isPaused()));
+            count++;
+        }
+        properties.setProperty("instances", Integer.toString(count));
+
+        try {
+            writeProperties();
+        } catch (IOException e) {
+            Logger.getInstance().warn("Couldn't save the session: %s", e);
+        }
+    }
+
+    /**
+     * Get the slideshow windows of the last session.
+     *
+     * @return Returns an empty list if there is no saved session.
+     */
+    public synchronized List<SavedInstance> load() {
+        var savedInstances = new ArrayList<SavedInstance>();
+        var count = Integer.parseInt(properties.getProperty("instances", "0"));
+        for (int i = 0; i < count; i++) {
+            var prefix = "instance." + i + ".";
+            var playlist = getPlaylistFile(i);
+            if (Files.notExists(playlist)) continue;
+
+            savedInstances.add(new SavedInstance(playlist,
+                    getDouble(prefix + "x"), getDouble(prefix + "y"),
+                    getDouble(prefix + "width"), getDouble(prefix + "height"),
+                    Boolean.parseBoolean(properties.getProperty(prefix + "maximized")),
+                    Boolean.parseBoolean(properties.getProperty(prefix + "playing"))));
+        }
+        return savedInstances;
+    }
+
+    private Path getPlaylistFile(int index) {
+        return folder.resolve(String.format("instance-%d.%s", index, PlaylistFile.fileExtension));
+    }
+
+    private double getDouble(String key) {
+        try {
+            return Double.parseDouble(properties.getProperty(key, "NaN"));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private void writeProperties() throws IOException {
+        Files.createDirectories(folder);
+        try (Writer writer = Files.newBufferedWriter(folder.resolve(propertiesFileName))) {
+            properties.store(writer, "Image Viewer session");
+        }
+    }
+
+    /**
+     * Get the singleton instance.
+     */
+    public static synchronized SessionStore getInstance() {
+        return instance == null ? instance = new SessionStore() : instance;
+    }
+
+    /**
+     * A slideshow window of the last session.
+     */
+    public static class SavedInstance {
+        private final Path playlistFile;
+        private final double x;
+        private final double y;
+        private final double width;
+        private final double height;
+        private final boolean maximized;
+        private final boolean playing;
+
+        SavedInstance(Path playlistFile, double x, double y, double width, double height, boolean maximized, boolean playing) {
+            this.playlistFile = playlistFile;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.maximized = maximized;
+            this.playing = playing;
+        }
+
+        /**
+         * Get the playlist file holding the window's slides, current slide and slideshow delay.
+         *
+         * @return Returns the path of the playlist file.
+         */
+        public Path getPlaylistFile() {
+            return playlistFile;
+        }
+
+        public double getX() {
+            return x;
+        }
+
+        public double getY() {
+            return y;
+        }
+
+        public double getWidth() {
+            return width;
+        }
+
+        public double getHeight() {
+            return height;
+        }
+
+        /**
+         * Was the window maximized?
+         *
+         * @return Returns true if yes otherwise false.
+         */
+        public boolean isMaximized() {
+            return maximized;
+        }
+
+        /**
+         * Was the slideshow playing?
+         *
+         * @return Returns true if yes otherwise false.
+         */
+        public boolean isPlaying() {
+            return playing;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package bll;
+
+import be.Slide;
+import javafx.concurrent.Task;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+/**
+ * Imports image files into a slideshow. The files are validated and probed in parallel by the SlideImporter and added
+ * to the slideshow in their original order, in batches, while the import runs. The value of the task is the amount of
+ * slides added so far.
+ */
+public class SlideImportTask extends Task<Integer> {
+
+    /**
+     * The amount of files being probed at the same time.
+     */
+    public static final int maxFilesInFlight = 256;
+
+    /**
+     * The amount of slides added to the slideshow at once.
+     */
+    public static final int batchSize = 64;
+
+    private final SlideImporter importer;
+    private final SlideshowManager slideshowManager;
+    private final Stream<Path> source;
+    private final Iterator<Path> paths;
+    private final long totalFiles;
+    private int addedCount;
+
+    /**
+     * @param importer         The importer that probes the files.
+     * @param slideshowManager The slideshow to add the slides to.
+     * @param paths            The image files, the slides are added in this order. The stream is consumed lazily while
+     *                         importing and closed when the import ends.
+     * @param totalFiles       The amount of files. (-1 if unknown, the progress is then indeterminate.)
+     */
+    public SlideImportTask(SlideImporter importer, SlideshowManager slideshowManager, Stream<Path> paths, long totalFiles) {
+        this.importer = importer;
+        this.slideshowManager = slideshowManager;
+        this.source = paths;
+        this.paths = paths.iterator();
+        this.totalFiles = totalFiles;
+        updateValue(0);
+    }
+
+    @Override
+    protected Integer call() throws Exception {
+        var inFlight = new ArrayDeque<CompletableFuture<Slide>>();
+        var batch = new ArrayList<Slide>(batchSize);
+        var processed = 0L;
+
+        try {
+            while (!isCancelled() && (paths.hasNext() || !inFlight.isEmpty())) {
+                while (paths.hasNext() && inFlight.size() < maxFilesInFlight)
+                    inFlight.add(importer.createSlide(paths.next()));
+
+                var next = inFlight.poll();
+
+                // Add what we have before waiting, so slides show up as soon as they're ready.
+                if (!next.isDone() && !batch.isEmpty())
+                    flush(batch);
+
+                var slide = getSlide(next);
+                if (slide != null) batch.add(slide);
+
+                if (batch.size() >= batchSize)
+                    flush(batch);
+
+                processed++;
+                updateProgress(processed, totalFiles >= 0 ? totalFiles : -1);
+            }
+
+            if (!isCancelled()) flush(batch);
+        } finally {
+            inFlight.forEach(future -> future.cancel(false));
+            source.close();
+        }
+
+        // Keep the slideshow up to date with files added, changed or removed later on.
+        FolderWatcher.getInstance().watch(slideshowManager);
+
+        // Files that aren't images or are already in the slideshow are skipped.
+        var message = String.format("Imported %d slides, skipped %d files.", addedCount, processed - addedCount);
+        updateMessage(message);
+        Logger.getInstance().info(message);
+        return addedCount;
+    }
+
+    private void flush(List<Slide> batch) {
+        addedCount += slideshowManager.addSlides(batch);
+        batch.clear();
+        updateValue(addedCount);
+    }
+
+    private static Slide getSlide(CompletableFuture<Slide> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package bll;
+
+import be.Slide;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SlideImporter {
+
+    /**
+     * The amount of threads that wait on file system calls. High, because on network shares most of the time is spent
+     * waiting for round trips rather than for the disk.
+     */
+    public static final int ioThreads = 32;
+
+    /**
+     * The amount of bytes read from the start of each file to find its pixel size.
+     */
+    public static final int headerBytes = 64 * 1024;
+
+    private final ExecutorService ioExecutor;
+    private final ExecutorService cpuExecutor;
+    private final ExecutorService taskExecutor;
+
+    private static SlideImporter instance;
+
+    public SlideImporter() {
+        ioExecutor = newDaemonPool("slide-import-io", ioThreads);
+        cpuExecutor = newDaemonPool("slide-import-cpu", Runtime.getRuntime().availableProcessors());
+        taskExecutor = Executors.newCachedThreadPool(runnable -> {
+            var thread = new Thread(runnable, "slide-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static ExecutorService newDaemonPool(String name, int threads) {
+        var threadCount = new AtomicInteger();
+        var executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            var thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Don't keep 32 idle threads around between imports.
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Import image files into a slideshow in the background. Files that don't exist or aren't supported images are
+     * skipped.
+     *
+     * @param slideshowManager The slideshow to add the slides to.
+     * @param files            The image files, the slides are added in this order.
+     * @return Returns the running import, which reports its progress and can be cancelled.
+     */
+    public SlideImportTask importFiles(SlideshowManager slideshowManager, List<File> files) {
+        return start(new SlideImportTask(this, slideshowManager, files.stream().map(File::toPath), files.size()));
+    }
+
+    /**
+     * Import the images in a folder into a slideshow in the background. The folder is listed lazily and slides are
+     * added as they are found, so the first ones can be shown long before a big folder is fully listed.
+     *
+     * @param slideshowManager The slideshow to add the slides to.
+     * @param folder           The folder to import.
+     * @param recursive        Whether to include the images in sub folders.
+     * @return Returns the running import, which reports its progress and can be cancelled.
+     */
+    public SlideImportTask importFolder(SlideshowManager slideshowManager, Path folder, boolean recursive) {
+        return start(new SlideImportTask(this, slideshowManager, FolderWalker.walk(folder, recursive), -1));
+    }
+
+    private SlideImportTask start(SlideImportTask task) {
+        taskExecutor.execute(task);
+        return task;
+    }
+
+    /**
+     * Create the slides of the images in a folder and wait for them, for slideshows that don't show anything before the
+     * whole folder is read. (The window imports with importFolder() instead, which adds slides as they are found.)
+     *
+     * @param folder    The folder to read.
+     * @param recursive Whether to include the images in sub folders.
+     * @return Returns the slides in the order the folder was listed in.
+     */
+    public List<Slide> createSlides(Path folder, boolean recursive) {
+        var slides = new ArrayList<Slide>();
+        var inFlight = new ArrayList<CompletableFuture<Slide>>(SlideImportTask.maxFilesInFlight);
+
+        try (var paths = FolderWalker.walk(folder, recursive)) {
+            var iterator = paths.iterator();
+            while (iterator.hasNext()) {
+                inFlight.add(createSlide(iterator.next()));
+                if (inFlight.size() >= SlideImportTask.maxFilesInFlight || !iterator.hasNext()) {
+                    for (var future : inFlight) {
+                        var slide = future.exceptionally(e -> null).join();
+                        if (slide != null) slides.add(slide);
+                    }
+                    inFlight.clear();
+                }
+            }
+        }
+        return slides;
+    }
+
+    /**
+     * Validate an image file and create its slide. The file is checked and its header read on an I/O thread, the
+     * header is parsed on a CPU thread.
+     *
+     * @param path The path of the image file.
+     * @return Returns a future that completes with the slide, or with null if the file isn't a supported image.
+     */
+    public CompletableFuture<Slide> createSlide(Path path) {
+        return CompletableFuture.supplyAsync(() -> readHeader(path), ioExecutor)
+                .thenApplyAsync(this::parseHeader, cpuExecutor);
+    }
+
+    private FileHeader readHeader(Path path) {
+        if (!ImageDecoder.isSupported(path.getFileName().toString())) return null;
+
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) return null;
+
+            var buffer = ByteBuffer.allocate((int) Math.min(headerBytes, attributes.size()));
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) ;
+            return new FileHeader(path, attributes, Arrays.copyOf(buffer.array(), buffer.position()));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private Slide parseHeader(FileHeader header) {
+        if (header == null) return null;
+
+        // If the size isn't within the header bytes it is read when the slide gets decoded.
+        var size = ImageDecoder.readSourceSize(header.bytes);
+        return new Slide(header.path.toString(), header.attributes.size(), header.attributes.lastModifiedTime().toMillis(),
+                size != null ? size.getWidth() : 0, size != null ? size.getHeight() : 0);
+    }
+
+    /**
+     * Get the singleton instance.
+     */
+    public static synchronized SlideImporter getInstance() {
+        return instance == null ? instance = new SlideImporter() : instance;
+    }
+
+    private static class FileHeader {
+        private final Path path;
+        private final BasicFileAttributes attributes;
+        private final byte[] bytes;
+
+        FileHeader(Path path, BasicFileAttributes attributes, byte[] bytes) {
+            this.path = path;
+            this.attributes = attributes;
+            this.bytes = bytes;
+        }
+    }
+}
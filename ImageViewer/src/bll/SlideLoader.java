@@ -0,0 +1,177 @@
+package bll;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+public class SlideLoader {
+
+    /**
+     * The priority of previews shown while a slide is being decoded, they run before everything else.
+     */
+    public static final int previewPriority = -1;
+
+    /**
+     * The priority of decodes for slides that are about to be shown. Lower priorities run first.
+     */
+    public static final int displayPriority = 0;
+
+    /**
+     * The priority of decodes for slides that might be shown soon. The distance to the shown slide is added to it.
+     */
+    public static final int prefetchPriority = 1;
+
+    /**
+     * The priority of thumbnails, they are made after the decodes of slides that are or might be shown.
+     */
+    public static final int thumbnailPriority = 100;
+
+    private final ThreadPoolExecutor decodeExecutor;
+    private final AtomicLong jobSequence = new AtomicLong();
+    private final Metrics.Counter cancelledJobs = Metrics.getInstance().counter("decode.cancelled");
+
+    private static SlideLoader instance;
+
+    public SlideLoader() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    public SlideLoader(int decodeThreads) {
+        var threadCount = new AtomicInteger();
+        decodeExecutor = new ThreadPoolExecutor(decodeThreads, decodeThreads, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(), runnable -> {
+            var thread = new Thread(runnable, "slide-decoder-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Run a decode job for a slide that is about to be shown.
+     *
+     * @param job The job to run.
+     * @param <T> The result type of the job.
+     * @return Returns a future that completes with the result of the job. Cancelling it before the job started removes
+     * the job from the queue.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> job) {
+        return submit(job, displayPriority);
+    }
+
+    /**
+     * Run a decode job on one of the background decode threads.
+     *
+     * @param job      The job to run.
+     * @param priority The priority of the job. Jobs with a lower priority run first, equal priorities in order.
+     * @param <T>      The result type of the job.
+     * @return Returns a future that completes with the result of the job. Cancelling it before the job started removes
+     * the job from the queue.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> job, int priority) {
+        var decodeJob = new DecodeJob<>(job, priority, jobSequence.getAndIncrement());
+        decodeExecutor.execute(decodeJob);
+        return decodeJob;
+    }
+
+    /**
+     * Change the priority of a job that hasn't started yet.
+     *
+     * @param future   The future returned by submit().
+     * @param priority The new priority.
+     * @return Returns true if the job was still queued otherwise false.
+     */
+    public boolean reprioritize(CompletableFuture<?> future, int priority) {
+        if (!(future instanceof DecodeJob)) return false;
+
+        var decodeJob = (DecodeJob<?>) future;
+        if (decodeJob.priority == priority) return true;
+        if (!decodeExecutor.remove(decodeJob)) return false;
+
+        decodeJob.priority = priority;
+        decodeExecutor.execute(decodeJob);
+        return true;
+    }
+
+    /**
+     * Cancel a job unless it already started. A started decode can't be stopped halfway, it is left to finish so its
+     * result isn't wasted (slides cache what they decode).
+     *
+     * @param future The future returned by submit().
+     * @return Returns true if the job was cancelled otherwise false.
+     */
+    public boolean cancelQueued(CompletableFuture<?> future) {
+        if (!(future instanceof DecodeJob) || !decodeExecutor.remove((DecodeJob<?>) future)) return false;
+        cancelledJobs.increment();
+        return future.cancel(false);
+    }
+
+    /**
+     * Get the amount of decode jobs waiting for a thread.
+     *
+     * @return Returns the queue length.
+     */
+    public int getQueueLength() {
+        return decodeExecutor.getQueue().size();
+    }
+
+    /**
+     * Get the amount of threads decoding in parallel.
+     *
+     * @return Returns the amount.
+     */
+    public int getThreadCount() {
+        return decodeExecutor.getMaximumPoolSize();
+    }
+
+    /**
+     * Get the singleton instance.
+     */
+    public static synchronized SlideLoader getInstance() {
+        if (instance == null) {
+            var loader = new SlideLoader();
+            Metrics.getInstance().gauge("decode.queue", loader::getQueueLength);
+            instance = loader;
+        }
+        return instance;
+    }
+
+    private class DecodeJob<T> extends CompletableFuture<T> implements Runnable, Comparable<DecodeJob<?>> {
+        private final Supplier<T> job;
+        private final long sequence;
+        private volatile int priority;
+
+        DecodeJob(Supplier<T> job, int priority, long sequence) {
+            this.job = job;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            // Cancelled while waiting in the queue.
+            if (isDone()) return;
+
+            try {
+                complete(job.get());
+            } catch (Throwable e) {
+                completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            var cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled && decodeExecutor.remove(this)) cancelledJobs.increment();
+            return cancelled;
+        }
+
+        @Override
+        public int compareTo(DecodeJob<?> other) {
+            if (priority != other.priority) return Integer.compare(priority, other.priority);
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
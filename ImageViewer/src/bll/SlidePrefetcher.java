@@ -0,0 +1,119 @@
+package bll;
+
+import be.Slide;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class SlidePrefetcher {
+
+    private int aheadCount = 3;
+    private int behindCount = 1;
+    private int direction = 1;
+    private int lastIndex = -1;
+    private Set<Slide> prefetching = new HashSet<>();
+
+    /**
+     * Prefetch the slides around the one being shown. The slides in the direction of travel are prefetched first, and
+     * prefetches for slides that fell out of the window (for example after a jump) are cancelled.
+     *
+     * @param slides         The slides of the slideshow.
+     * @param index          The index of the slide being shown.
+     * @param viewportWidth  The viewport width in device pixels.
+     * @param viewportHeight The viewport height in device pixels.
+     */
+    public synchronized void update(List<Slide> slides, int index, double viewportWidth, double viewportHeight) {
+        var count = slides.size();
+        if (count == 0) {
+            cancel();
+            return;
+        }
+
+        updateDirection(index, count);
+
+        var window = new HashSet<Slide>();
+        var current = slides.get(index);
+
+        // Interleave ahead and behind by distance so the nearest slides are queued first.
+        for (int distance = 1; distance <= Math.max(aheadCount, behindCount); distance++) {
+            if (distance <= aheadCount)
+                prefetch(slides.get(Math.floorMod(index + direction * distance, count)), current, window, distance, viewportWidth, viewportHeight);
+            if (distance <= behindCount)
+                prefetch(slides.get(Math.floorMod(index - direction * distance, count)), current, window, distance, viewportWidth, viewportHeight);
+        }
+
+        for (var slide : prefetching) {
+            if (!window.contains(slide)) slide.cancelPrefetch();
+        }
+        prefetching = window;
+    }
+
+    private void prefetch(Slide slide, Slide current, Set<Slide> window, int distance, double viewportWidth, double viewportHeight) {
+        if (slide == current || !window.add(slide)) return;
+        slide.prefetchImage(viewportWidth, viewportHeight, SlideLoader.prefetchPriority + distance);
+    }
+
+    private void updateDirection(int index, int count) {
+        if (lastIndex >= 0 && count > 2) {
+            var forward = Math.floorMod(index - lastIndex, count);
+            if (forward == 1) direction = 1;
+            else if (forward == count - 1) direction = -1;
+            // Anything else is a jump, keep going the way we went before.
+        }
+        lastIndex = index;
+    }
+
+    /**
+     * Cancel all running prefetches.
+     */
+    public synchronized void cancel() {
+        prefetching.forEach(Slide::cancelPrefetch);
+        prefetching.clear();
+    }
+
+    /**
+     * Get the amount of slides prefetched in the direction of travel.
+     *
+     * @return Returns the amount.
+     */
+    public synchronized int getAheadCount() {
+        return aheadCount;
+    }
+
+    /**
+     * Set the amount of slides prefetched in the direction of travel.
+     *
+     * @param aheadCount The amount to use. (0 to disable.)
+     */
+    public synchronized void setAheadCount(int aheadCount) {
+        this.aheadCount = Math.max(0, aheadCount);
+    }
+
+    /**
+     * Get the amount of slides prefetched against the direction of travel.
+     *
+     * @return Returns the amount.
+     */
+    public synchronized int getBehindCount() {
+        return behindCount;
+    }
+
+    /**
+     * Set the amount of slides prefetched against the direction of travel.
+     *
+     * @param behindCount The amount to use. (0 to disable.)
+     */
+    public synchronized void setBehindCount(int behindCount) {
+        this.behindCount = Math.max(0, behindCount);
+    }
+
+    /**
+     * Get the direction of travel.
+     *
+     * @return Returns 1 if moving forward or -1 if moving backward.
+     */
+    public synchronized int getDirection() {
+        return direction;
+    }
+}
@@ -0,0 +1,99 @@
+package bll;
+
+import javafx.scene.image.Image;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts decoded slides on screen for a SlideshowManager.
+ */
+public interface SlidePresenter {
+
+    /**
+     * A slide shown later than this after it was due counts as a missed deadline. (Three frames at 60 Hz.)
+     */
+    long missedDeadlineNanos = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /**
+     * Show an image. May be called from any thread; an implementation may drop an image that is replaced before it got
+     * shown.
+     *
+     * @param image   The image to show.
+     * @param dueTime The System.nanoTime() at which the slide was due to be shown.
+     */
+    void present(Image image, long dueTime);
+
+    /**
+     * Does the presenter show previews while slides are decoded? If not, the slideshow doesn't make them.
+     *
+     * @return Returns true if yes otherwise false.
+     */
+    default boolean showsPreviews() {
+        return false;
+    }
+
+    /**
+     * Show a low quality preview of a slide until present() is called with the slide itself. May be called from any
+     * thread.
+     *
+     * @param preview The preview to show, scaled up to the size the slide will be shown at.
+     * @param dueTime The System.nanoTime() at which the slide was due to be shown.
+     */
+    default void presentPreview(Image preview, long dueTime) {
+
+    }
+
+    /**
+     * Get the latency from slides being due until they were shown.
+     *
+     * @return Returns the latency histogram.
+     */
+    LatencyHistogram getLatency();
+
+    /**
+     * Get the latency from slides being due until the first image of them was shown, a preview or the slide itself.
+     * This is the delay the viewer notices.
+     *
+     * @return Returns the latency histogram. (The same as getLatency() for presenters that don't show previews.)
+     */
+    default LatencyHistogram getPerceivedLatency() {
+        return getLatency();
+    }
+
+    /**
+     * Count a slide as shown in the metrics shared by all presenters.
+     *
+     * @param latencyNanos The time from the slide being due until it was shown.
+     */
+    static void recordShown(long latencyNanos) {
+        PresenterMetrics.shown.increment();
+        PresenterMetrics.latency.record(latencyNanos);
+        if (latencyNanos > missedDeadlineNanos) PresenterMetrics.missedDeadlines.increment();
+    }
+
+    /**
+     * Count the first image of a slide, a preview or the slide itself, as shown in the metrics shared by all presenters.
+     *
+     * @param latencyNanos The time from the slide being due until its first image was shown.
+     * @param preview      Whether the first image was a preview.
+     */
+    static void recordFirstShown(long latencyNanos, boolean preview) {
+        PresenterMetrics.perceivedLatency.record(latencyNanos);
+        if (preview) PresenterMetrics.previews.increment();
+    }
+
+    /**
+     * The metrics of all presenters together.
+     */
+    final class PresenterMetrics {
+        private static final Metrics.Counter shown = Metrics.getInstance().counter("slide.shown");
+        private static final Metrics.Counter previews = Metrics.getInstance().counter("slide.previews");
+        private static final Metrics.Counter missedDeadlines = Metrics.getInstance().counter("slide.missedDeadlines");
+        private static final LatencyHistogram latency = Metrics.getInstance().histogram("slide.latency");
+        private static final LatencyHistogram perceivedLatency = Metrics.getInstance().histogram("slide.perceivedLatency");
+
+        private PresenterMetrics() {
+
+        }
+    }
+}
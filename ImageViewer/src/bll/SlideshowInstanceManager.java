@@ -1,23 +1,69 @@
 package bll;
 
 import be.SlideshowInstance;
-import gui.controller.ImageViewerWindowController;
-import javafx.concurrent.Task;
-import javafx.stage.Stage;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Takes the slideshow instances in turns. Up to maxPlayingInstances of them play at the same time, as many as the
+ * decode threads and the image cache can keep up with; the rest wait paused. When more want to play than are admitted,
+ * the playing ones are swapped out every instanceShowTime seconds for those that played the least so far, so every
+ * instance gets the same share of playing time.
+ */
+public class SlideshowInstanceManager {
 
-public class SlideshowInstanceManager extends Task {
-
-    private double currentInstanceShowTime;
-    private int currentInstanceIndex;
-    private ExecutorService executorService;
-    private List<SlideshowInstance> slideshowInstances;
+    /**
+     * The states of the instance rotation.
+     */
+    public enum State {
+        /**
+         * The rotation hasn't been started.
+         */
+        STOPPED,
+        /**
+         * There are fewer than two instances, so there's nothing to rotate.
+         */
+        IDLE,
+        /**
+         * The admitted instances are shown until their deadline, then those that played the least take over. If all of
+         * them fit, the deadline only checks whether they still do.
+         */
+        SHOWING
+    }
 
-    private SlideshowInstance currentSlideshow;
+    private final CopyOnWriteArrayList<SlideshowInstance> slideshowInstances = new CopyOnWriteArrayList<>();
+    private final AtomicLong nextInstanceId = new AtomicLong(1);
+
+    // Only transitions take this lock, the UI facing methods work on the concurrent registry and never wait on it.
+    private final Object transitionLock = new Object();
+    private volatile State state = State.STOPPED;
+    private volatile SlideshowInstance currentSlideshow;
+    private volatile int currentInstanceIndex = -1;
+    private final Metrics.Counter transitionCount = Metrics.getInstance().counter("rotation.transitions");
+    private final LatencyHistogram transitionTime = Metrics.getInstance().histogram("rotation.transitionTime");
+    private volatile boolean exported;
+    private ScheduledFuture<?> rotationDeadline;
+    private long rotationDeadlineTime;
+    private volatile int maxPlayingInstances = getDefaultMaxPlayingInstances();
+    // The instances taking part in the current turn, in the order they were admitted. Guarded by transitionLock.
+    private final Set<SlideshowInstance> playingInstances = new LinkedHashSet<>();
+    private volatile List<SlideshowInstance> playingSnapshot = List.of();
+    // Instances the rotation paused, as opposed to ones the user paused. Guarded by transitionLock.
+    private final Set<SlideshowInstance> rotatedOut = new HashSet<>();
+    private final Map<SlideshowInstance, Long> playedNanos = new HashMap<>();
+    private long turnStartTime;
 
 
     /**
@@ -25,48 +71,39 @@ public class SlideshowInstanceManager extends Task {
      */
     public static double instanceShowTime = 20;
 
+    /**
+     * The share of the decode threads' time the playing instances may be expected to take. The rest is left for
+     * previews, thumbnails and slides that take longer than usual.
+     */
+    public static final double decodeUtilization = 0.75;
+
     private static SlideshowInstanceManager instance;
 
     public SlideshowInstanceManager() {
-        initialize();
-    }
 
-    private void initialize() {
-        slideshowInstances = new ArrayList<>();
     }
 
     /**
-     * Add a new ImageViewerWindowController instance.
+     * Add a slideshow instance to the rotation, unless it already takes part. An instance without an id gets the next
+     * free one.
      *
-     * @param slideshowInstance The ImageViewerWindowController instance to add.
+     * @param slideshowInstance The slideshow instance to add.
      * @return Returns true if successful otherwise false.
      */
     public boolean addControllerInstance(SlideshowInstance slideshowInstance) {
-        if (slideshowInstance != null && !slideshowInstances.contains(slideshowInstance)) {
-            slideshowInstances.add(slideshowInstance);
-            Logger.getInstance().log(String.format("New instance of %s added.", slideshowInstance.getClass().getSimpleName()));
+        if (slideshowInstance == null) return false;
+
+        if (slideshowInstance.getId() == 0)
+            slideshowInstance.setId(nextInstanceId.getAndIncrement());
+        if (slideshowInstances.addIfAbsent(slideshowInstance)) {
+            if (exported) Management.register(slideshowInstance);
+            Logger.getInstance().info("New instance of %s added.", slideshowInstance.getClass().getSimpleName());
+            postTransition();
             return true;
         }
         return false;
     }
 
-    /**
-     * Add a new ImageViewerWindowController instance.
-     *
-     * @param controller The ImageViewerWindowController instance to add.
-     * @return Returns true if successful otherwise false.
-     */
-    public SlideshowInstance addControllerInstance(ImageViewerWindowController controller, Stage stage) {
-        if (controller != null) {
-            var id = slideshowInstances.size() + 1;
-            var instance = new SlideshowInstance(id, controller, stage);
-            slideshowInstances.add(instance);
-            Logger.getInstance().log(String.format("New instance of %s added.", controller.getClass().getSimpleName()));
-            return instance;
-        }
-        return null;
-    }
-
     /**
      * Remove an ImageViewerWindowController instance.
      *
@@ -74,14 +111,11 @@ public class SlideshowInstanceManager extends Task {
      * @return Returns true if successful otherwise false.
      */
     public boolean removeControllerInstance(SlideshowInstance controller) {
-        if (controller != null && slideshowInstances.contains(controller)) {
-            for (int i = 0; i < slideshowInstances.size(); i++) {
-                var currController = slideshowInstances.get(i);
-                if (currController.equals(controller)) {
-                    slideshowInstances.remove(i);
-                    return true;
-                }
-            }
+        if (controller != null && slideshowInstances.remove(controller)) {
+            if (exported) Management.unregister(controller);
+            FolderWatcher.getInstance().unwatch(controller.getSlideshowManager());
+            postTransition();
+            return true;
         }
         return false;
     }
@@ -93,34 +127,39 @@ public class SlideshowInstanceManager extends Task {
      * @return Returns true if successful otherwise false.
      */
     public boolean removeControllerInstance(long id) {
-        for (int i = 0; i < slideshowInstances.size(); i++) {
-            var currController = slideshowInstances.get(i);
-            if (currController.getId() == id) {
-                slideshowInstances.remove(i);
-                return true;
-            }
+        for (var slideshowInstance : slideshowInstances) {
+            if (slideshowInstance.getId() == id)
+                return removeControllerInstance(slideshowInstance);
         }
         return false;
     }
 
     /**
-     * Show the next slide.
+     * Get the next slideshow instance in the rotation.
      *
-     * @return Returns the next slide.
+     * @return Returns null if there are no instances.
      */
-    public synchronized SlideshowInstance next() {
-        currentInstanceIndex = (currentInstanceIndex + 1) % slideshowInstances.size();
-        return slideshowInstances.get(currentInstanceIndex);
+    public SlideshowInstance next() {
+        return step(1);
     }
 
     /**
-     * Show the previous slide.
+     * Get the previous slideshow instance in the rotation.
      *
-     * @return Returns the previous slide.
+     * @return Returns null if there are no instances.
      */
-    public synchronized SlideshowInstance previous() {
-        currentInstanceIndex = (currentInstanceIndex - 1 + slideshowInstances.size()) % slideshowInstances.size();
-        return slideshowInstances.get(currentInstanceIndex);
+    public SlideshowInstance previous() {
+        return step(-1);
+    }
+
+    private SlideshowInstance step(int direction) {
+        // Work on one snapshot, the registry may change while we're at it.
+        var instances = slideshowInstances.toArray(new SlideshowInstance[0]);
+        if (instances.length == 0) return null;
+
+        var index = Math.floorMod(currentInstanceIndex + direction, instances.length);
+        currentInstanceIndex = index;
+        return instances[index];
     }
 
     /**
@@ -128,9 +167,8 @@ public class SlideshowInstanceManager extends Task {
      *
      * @param id The id of the slideshow to ignore.
      */
-    public synchronized void pauseAllExcept(long id) {
-        for (int i = 0; i < slideshowInstances.size(); i++) {
-            var slideInstance = slideshowInstances.get(i);
+    public void pauseAllExcept(long id) {
+        for (var slideInstance : slideshowInstances) {
             if (slideInstance.getId() != id && !slideInstance.getSlideshowManager().isPaused()) {
                 slideInstance.getSlideshowManager().pause();
                 slideInstance.setActive(false);
@@ -139,9 +177,8 @@ public class SlideshowInstanceManager extends Task {
         }
     }
 
-    public synchronized void pauseAll() {
-        for (int i = 0; i < slideshowInstances.size(); i++) {
-            var slideInstance = slideshowInstances.get(i);
+    public void pauseAll() {
+        for (var slideInstance : slideshowInstances) {
             if (slideInstance.isActive()) {
                 slideInstance.getSlideshowManager().pause();
                 slideInstance.setActive(false);
@@ -155,9 +192,8 @@ public class SlideshowInstanceManager extends Task {
      *
      * @param id The id of the slideshow to ignore.
      */
-    public synchronized void resumeAllExcept(long id) {
-        for (int i = 0; i < slideshowInstances.size(); i++) {
-            var slideInstance = slideshowInstances.get(i);
+    public void resumeAllExcept(long id) {
+        for (var slideInstance : slideshowInstances) {
             if (slideInstance.getId() != id && !slideInstance.isActive()) {
                 slideInstance.getSlideshowManager().unpause();
                 slideInstance.setActive(true);
@@ -169,9 +205,8 @@ public class SlideshowInstanceManager extends Task {
     /**
      * Resume all slideshows.
      */
-    public synchronized void resumeAll() {
-        for (int i = 0; i < slideshowInstances.size(); i++) {
-            var slideInstance = slideshowInstances.get(i);
+    public void resumeAll() {
+        for (var slideInstance : slideshowInstances) {
             if (slideInstance.getSlideshowManager().isPaused()) {
                 slideInstance.getSlideshowManager().unpause();
                 slideInstance.setActive(true);
@@ -186,9 +221,8 @@ public class SlideshowInstanceManager extends Task {
      * @param slideshowInstance The target slideshow to compare with.
      * @return Returns true if yes otherwsie false.
      */
-    public synchronized boolean isAnyOtherSlideshowPlayingThan(SlideshowInstance slideshowInstance) {
-        for (int i = 0; i < slideshowInstances.size(); i++) {
-            var slideInstance = slideshowInstances.get(i);
+    public boolean isAnyOtherSlideshowPlayingThan(SlideshowInstance slideshowInstance) {
+        for (var slideInstance : slideshowInstances) {
             if (slideInstance.getId() != slideshowInstance.getId() && slideInstance.getSlideshowManager().isSlideshowStarted() && !slideInstance.getSlideshowManager().isPaused()) {
                 return true;
             }
@@ -197,90 +231,279 @@ public class SlideshowInstanceManager extends Task {
     }
 
     /**
-     * Start the slideshow instance watcher thread. Please use start() to start the slideshow watcher and not this!
+     * Re-evaluate the rotation on the scheduler after the registry changed.
      */
-    @Override
-    protected synchronized Object call() throws Exception {
-        while (true) {
-
-            try {
-                // If requested to kill the slideshow, stop.
-                if (executorService == null || executorService != null && (executorService.isTerminated() || executorService.isShutdown())) {
-                    Logger.getInstance().log("Executioner thread is either null, killed or shut down! Cannot go any further, man.");
-                    break;
-                }
-
-                // if only an instance is active don't do anything.
-                if (slideshowInstances.size() <= 1) {
-                    Thread.sleep(500);
-                    continue;
-                }
-
-                // If no current slideshow is active pick the next available.
-                // And make it active.
-                if (currentSlideshow == null) {
-                    currentSlideshow = next();
-                    currentSlideshow.setActive(true);
-                    currentInstanceShowTime = 0;
-                    if (isAnyOtherSlideshowPlayingThan(currentSlideshow))
-                        pauseAllExcept(currentSlideshow.getId());
-
-                    // Let's give the cpu some time to think...
-                    Thread.sleep(300);
-                } else {
-                    //if (currentSlideshow.isActive() && currentSlideshow.getSlideshowManager().isSlideshowStarted()) {
-
-                    // If our current slideshow is active...
-                    if (currentSlideshow.isActive()) {
-                        Logger.getInstance().log(String.format("Instance: %d is currently active.", currentSlideshow.getId()));
-
-                        // Start it by either starting the thread Task itself, pause or unpause.
-                        if (!currentSlideshow.getSlideshowManager().isSlideshowStarted())
-                            currentSlideshow.getSlideshowManager().start();
-                        else if (currentSlideshow.getSlideshowManager().isPaused())
-                            currentSlideshow.getSlideshowManager().unpause();
-
-                        // Increment the timer.
-                        if (currentInstanceShowTime < instanceShowTime)
-                            currentInstanceShowTime++;
-                        else {
-                            // Once we reach the limit, reset the timer.
-                            // And nullify the current slideshow to be reusable for the next slideshow.
-                            currentInstanceShowTime = 0;
-                            currentSlideshow.setActive(false);
-                            currentSlideshow = null;
-                            //resumeAll();
-                        }
-
-                        // Since the timer is in seconds we then have to make the thread sleep like so.
-                        //Logger.getInstance().log(String.format("Current show time: %d, desired time: %d", currentInstanceShowTime, instanceShowTime));
-                        Thread.sleep(1000);
-                    }
-                }
-
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+    private void postTransition() {
+        if (state != State.STOPPED)
+            SlideshowScheduler.getInstance().schedule(this::onInstancesChanged, 0, TimeUnit.NANOSECONDS);
+    }
+
+    private void onInstancesChanged() {
+        synchronized (transitionLock) {
+            if (state == State.STOPPED) return;
+            rotate(false);
+        }
+    }
+
+    private void onRotationDeadline() {
+        synchronized (transitionLock) {
+            if (state != State.SHOWING) return;
+
+            // The deadline may have been replaced while this one was being picked up.
+            if (System.nanoTime() < rotationDeadlineTime) return;
+
+            rotationDeadline = null;
+            rotate(true);
         }
-        return null;
     }
 
     /**
-     * Start the slideshow.
+     * Decide which instances play. Must hold the transition lock.
+     *
+     * @param turnEnded Whether the playing instances' turn is over. Otherwise they keep playing if they still fit, and
+     *                  only free places are filled.
      */
-    public void start() {
-        if (executorService != null && (!executorService.isTerminated() || !executorService.isShutdown())) {
+    private void rotate(boolean turnEnded) {
+        var start = System.nanoTime();
+        chargePlayedTime(start);
+
+        var instances = new ArrayList<>(slideshowInstances);
+        if (instances.size() <= 1) {
+            enterIdle();
             return;
         }
-//        else if (controllerInstances.size() <= 0) {
-//            Logger.getInstance().log("No controllers found! Please add one first.");
-//            return;
-//        }
 
-        executorService = Executors.newSingleThreadExecutor();
-        executorService.submit(this);
-        Logger.getInstance().log("Starting slideshow instance manager thread!");
+        playingInstances.retainAll(instances);
+        rotatedOut.retainAll(instances);
+        playedNanos.keySet().retainAll(instances);
+        // Newcomers start level with the instance that played the least, rather than being owed the time before they came.
+        var leastPlayed = playedNanos.values().stream().mapToLong(Long::longValue).min().orElse(0);
+        for (var slideshowInstance : instances)
+            playedNanos.putIfAbsent(slideshowInstance, leastPlayed);
+
+        // Sorting is stable, so instances that played as long as each other go in the order they were added.
+        instances.sort(Comparator.comparing((SlideshowInstance slideshowInstance) -> turnEnded || !playingInstances.contains(slideshowInstance))
+                .thenComparingLong(playedNanos::get));
+        var admitted = getAdmittedCount(instances);
+        var admittedInstances = instances.subList(0, admitted);
+        var changed = false;
+        for (var slideshowInstance : instances.subList(admitted, instances.size()))
+            changed |= rotateOut(slideshowInstance);
+        for (var slideshowInstance : admittedInstances)
+            changed |= rotateIn(slideshowInstance);
+        setPlaying(admittedInstances);
+
+        if (turnEnded || rotationDeadline == null) {
+            cancelRotationDeadline();
+            var showTime = (long) (instanceShowTime * TimeUnit.SECONDS.toNanos(1));
+            rotationDeadlineTime = System.nanoTime() + showTime;
+            rotationDeadline = SlideshowScheduler.getInstance().schedule(this::onRotationDeadline, showTime, TimeUnit.NANOSECONDS);
+        }
+        state = State.SHOWING;
+        if (changed) {
+            transitionCount.increment();
+            transitionTime.record(System.nanoTime() - start);
+            Logger.getInstance().debug("Playing %d of %d instances.", admitted, instances.size());
+        }
+    }
 
+    /**
+     * Count how many instances can play at the same time, taking them in order until the next one would go over
+     * maxPlayingInstances, the decode threads' time or the image cache's byte budget. The first one always plays. Until
+     * the first image is decoded there's no decode time to go by, so only the other two limits count.
+     *
+     * @param instances The instances in the order they should be admitted.
+     * @return Returns the amount of instances at the start of the list that may play.
+     */
+    private int getAdmittedCount(List<SlideshowInstance> instances) {
+        var decodeCount = ImageDecoder.getDecodeCount();
+        var decodeSeconds = decodeCount > 0 ? ImageDecoder.getDecodeNanos() / 1e9 / decodeCount : 0;
+        var decodeCapacity = SlideLoader.getInstance().getThreadCount() * decodeUtilization;
+        var byteBudget = ImageCache.getInstance().getByteBudget();
+
+        var decodeLoad = 0.0;
+        var bytes = 0L;
+        var admitted = 0;
+        for (var slideshowInstance : instances) {
+            if (admitted >= maxPlayingInstances) break;
+
+            var slideshowManager = slideshowInstance.getSlideshowManager();
+            // A slideshow decodes about one slide per delay, a delay shorter than a decode keeps a thread busy.
+            decodeLoad += decodeSeconds > 0 ? decodeSeconds / Math.max(decodeSeconds, slideshowManager.getSlideShowDelay()) : 0;
+            bytes += getWorkingSetBytes(slideshowManager);
+            if (admitted > 0 && (decodeLoad > decodeCapacity || bytes > byteBudget)) break;
+            admitted++;
+        }
+        return admitted;
+    }
+
+    /**
+     * Estimate the bytes a playing slideshow keeps decoded: the shown slide, the back buffer and the prefetched slides,
+     * each about the size of the viewport.
+     */
+    private static long getWorkingSetBytes(SlideshowManager slideshowManager) {
+        var prefetcher = slideshowManager.getPrefetcher();
+        var slides = 2 + prefetcher.getAheadCount() + prefetcher.getBehindCount();
+        return slides * (long) slideshowManager.getViewportWidth() * (long) slideshowManager.getViewportHeight() * 4;
+    }
+
+    private boolean rotateIn(SlideshowInstance slideshowInstance) {
+        slideshowInstance.setActive(true);
+        rotatedOut.remove(slideshowInstance);
+        // Instances that keep playing are left alone, the user may have paused them.
+        if (playingInstances.contains(slideshowInstance)) return false;
+
+        // Start it by either starting the slideshow itself or unpausing it.
+        var slideshowManager = slideshowInstance.getSlideshowManager();
+        if (!slideshowManager.isSlideshowStarted())
+            slideshowManager.start();
+        else if (slideshowManager.isPaused())
+            slideshowManager.unpause();
+        return true;
+    }
+
+    private boolean rotateOut(SlideshowInstance slideshowInstance) {
+        slideshowInstance.setActive(false);
+        var slideshowManager = slideshowInstance.getSlideshowManager();
+        if (!slideshowManager.isSlideshowStarted() || slideshowManager.isPaused()) return playingInstances.contains(slideshowInstance);
+
+        slideshowManager.pause();
+        rotatedOut.add(slideshowInstance);
+        return true;
+    }
+
+    private void chargePlayedTime(long now) {
+        for (var slideshowInstance : playingInstances)
+            playedNanos.merge(slideshowInstance, now - turnStartTime, Long::sum);
+        turnStartTime = now;
+    }
+
+    private void setPlaying(List<SlideshowInstance> instances) {
+        playingInstances.clear();
+        playingInstances.addAll(instances);
+        playingSnapshot = List.copyOf(instances);
+        currentSlideshow = instances.isEmpty() ? null : instances.get(0);
+        if (currentSlideshow != null) currentInstanceIndex = slideshowInstances.indexOf(currentSlideshow);
+    }
+
+    private void enterIdle() {
+        cancelRotationDeadline();
+        // Let an instance the rotation paused play again now that it's left on its own.
+        for (var slideshowInstance : rotatedOut) {
+            slideshowInstance.setActive(true);
+            slideshowInstance.getSlideshowManager().unpause();
+        }
+        rotatedOut.clear();
+        setPlaying(List.of());
+        state = State.IDLE;
+    }
+
+    private void cancelRotationDeadline() {
+        if (rotationDeadline != null) {
+            rotationDeadline.cancel(false);
+            rotationDeadline = null;
+        }
+    }
+
+    /**
+     * Start rotating between the slideshow instances.
+     */
+    public void start() {
+        synchronized (transitionLock) {
+            if (state != State.STOPPED) return;
+            state = State.IDLE;
+        }
+
+        SlideshowScheduler.getInstance().schedule(this::onInstancesChanged, 0, TimeUnit.NANOSECONDS);
+        Logger.getInstance().info("Started slideshow instance rotation of up to %d playing at once!", maxPlayingInstances);
+    }
+
+    /**
+     * Stop rotating between the slideshow instances. The instances keep their current playing state.
+     */
+    public void stop() {
+        synchronized (transitionLock) {
+            cancelRotationDeadline();
+            chargePlayedTime(System.nanoTime());
+            for (var slideshowInstance : playingInstances)
+                slideshowInstance.setActive(false);
+            rotatedOut.clear();
+            setPlaying(List.of());
+            state = State.STOPPED;
+        }
+    }
+
+    /**
+     * Get the state of the instance rotation.
+     *
+     * @return Returns the state.
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Get the slideshow instance that is currently shown by the rotation.
+     *
+     * @return Returns null if no instance is shown.
+     */
+    public SlideshowInstance getCurrentSlideshow() {
+        return currentSlideshow;
+    }
+
+    /**
+     * Get the slideshow instances taking part in the current turn.
+     *
+     * @return Returns the instances in the order they were admitted, empty if the rotation is idle or stopped.
+     */
+    public List<SlideshowInstance> getPlayingSlideshows() {
+        return playingSnapshot;
+    }
+
+    /**
+     * Get the most slideshow instances that may play at the same time.
+     *
+     * @return Returns the amount.
+     */
+    public int getMaxPlayingInstances() {
+        return maxPlayingInstances;
+    }
+
+    /**
+     * Set the most slideshow instances that may play at the same time. Fewer play if the decode threads or the image
+     * cache couldn't keep up with that many.
+     *
+     * @param maxPlayingInstances The amount, at least 1.
+     */
+    public void setMaxPlayingInstances(int maxPlayingInstances) {
+        if (maxPlayingInstances < 1 || maxPlayingInstances == this.maxPlayingInstances) return;
+        this.maxPlayingInstances = maxPlayingInstances;
+        postTransition();
+    }
+
+    /**
+     * Get the most instances that may play at the same time unless told otherwise: the
+     * imageviewer.maxPlayingInstances system property, or 1.
+     *
+     * @return Returns the amount.
+     */
+    public static int getDefaultMaxPlayingInstances() {
+        var value = System.getProperty("imageviewer.maxPlayingInstances", "1");
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            Logger.getInstance().warn("Invalid amount of playing instances %s, playing one at a time instead.", value);
+            return 1;
+        }
+    }
+
+    /**
+     * Get all registered slideshow instances.
+     *
+     * @return Returns an unmodifiable view of the instances.
+     */
+    public List<SlideshowInstance> getSlideshowInstances() {
+        return Collections.unmodifiableList(slideshowInstances);
     }
 
     /**
@@ -295,12 +518,26 @@ public class SlideshowInstanceManager extends Task {
         }
     }
 
+    /**
+     * Set whether the slideshows are registered with JMX as they come and go. (See Management.export().)
+     *
+     * @param exported Whether to register them.
+     */
+    void setExported(boolean exported) {
+        this.exported = exported;
+    }
+
     /**
      * Get the singleton instance.
      *
      * @return Returns null if something goes wrong.
      */
-    public static SlideshowInstanceManager getInstance() {
-        return instance == null ? instance = new SlideshowInstanceManager() : instance;
+    public static synchronized SlideshowInstanceManager getInstance() {
+        if (instance == null) {
+            var manager = new SlideshowInstanceManager();
+            Metrics.getInstance().gauge("rotation.playing", () -> manager.getPlayingSlideshows().size());
+            instance = manager;
+        }
+        return instance;
     }
 }
@@ -0,0 +1,37 @@
+package bll;
+
+import be.Slide;
+
+/**
+ * Gets told what a SlideshowManager is doing. The methods are called on the thread that caused the change, which for
+ * slides advanced by the slideshow is the slideshow scheduler, so a window has to hand them over to the FX thread.
+ */
+public interface SlideshowListener {
+
+    /**
+     * Another slide became the current slide, because the slideshow advanced or it was moved to by next(), previous()
+     * or jumpTo().
+     *
+     * @param slide The slide that is now the current slide.
+     */
+    default void slideChanged(Slide slide) {
+
+    }
+
+    /**
+     * Slides were added, removed or reloaded because their files changed on disk. The indices of the slides may have
+     * shifted.
+     */
+    default void slidesChanged() {
+
+    }
+
+    /**
+     * The slideshow was started, paused, unpaused or stopped, or couldn't be started.
+     *
+     * @param message One of the SlideshowManager messages, for example SlideshowManager.slideshowStartedMessage.
+     */
+    default void messageChanged(String message) {
+
+    }
+}
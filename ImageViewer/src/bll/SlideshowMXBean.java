@@ -0,0 +1,86 @@
+package bll;
+
+/**
+ * The JMX view of one running slideshow, registered as ImageViewer:type=Slideshow,id=n.
+ */
+public interface SlideshowMXBean {
+
+    long getId();
+
+    int getSlideCount();
+
+    int getCurrentSlideIndex();
+
+    /**
+     * Get the file path of the current slide.
+     *
+     * @return Returns an empty string if there are no slides.
+     */
+    String getCurrentSlidePath();
+
+    boolean isStarted();
+
+    boolean isPaused();
+
+    /**
+     * Is the slideshow the one the instance rotation currently shows?
+     *
+     * @return Returns true if yes otherwise false.
+     */
+    boolean isActive();
+
+    double getSlideShowDelay();
+
+    void setSlideShowDelay(double seconds);
+
+    /**
+     * Get the amount of bytes the decoded images of this slideshow's slides take up in the image cache.
+     *
+     * @return Returns the amount of bytes.
+     */
+    long getDecodedBytesHeld();
+
+    /**
+     * Get the latency from slides being due until they were shown.
+     *
+     * @return Returns the count, mean, p50, p90, p99 and max.
+     */
+    String getLatency();
+
+    /**
+     * Get the latency from slides being due until the first image of them was shown, a preview or the slide itself.
+     *
+     * @return Returns the count, mean, p50, p90, p99 and max.
+     */
+    String getPerceivedLatency();
+
+    /**
+     * Get what the slideshow does when a slide isn't decoded when it is due.
+     *
+     * @return Returns HOLD, SKIP or EXTEND.
+     */
+    String getDeadlinePolicy();
+
+    void setDeadlinePolicy(String policy);
+
+    /**
+     * Get the amount of times the slide the slideshow advanced to wasn't decoded when it was due.
+     *
+     * @return Returns the count.
+     */
+    long getMissedDeadlineCount();
+
+    void start();
+
+    void stop();
+
+    void pause();
+
+    void resume();
+
+    void next();
+
+    void previous();
+
+    void jumpTo(int index);
+}
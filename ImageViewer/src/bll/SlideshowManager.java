@@ -1,24 +1,81 @@
 package bll;
 
+import be.Playlist;
 import be.Slide;
-import javafx.concurrent.Task;
 import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
 
-import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a slideshow: the slides, the current slide and advancing through them on the slideshow scheduler. It doesn't
+ * depend on a window, the slides are put on screen by a SlidePresenter and changes are reported to SlideshowListeners.
+ * <p>
+ * While the slideshow plays, the slide it advances to next is decoded into a back buffer as soon as the current slide
+ * is shown, and swapped in when it is due. If it isn't decoded by then, the DeadlinePolicy decides what happens.
+ * <p>
+ * A slide that isn't decoded yet is shown progressively: its thumbnail is shown right away (or made first, ahead of all
+ * other decodes) and replaced by the slide once it is decoded. Set the imageviewer.progressive system property to false
+ * to show nothing new until the slide is decoded.
+ */
+public class SlideshowManager {
 
-public class SlideshowManager extends Task {
+    /**
+     * What the slideshow does when the slide it advances to isn't decoded when it is due.
+     */
+    public enum DeadlinePolicy {
+        /**
+         * Keep showing the current slide until the next one is decoded, then show it. The slide after it is still due
+         * when it would have been, so the slideshow keeps its pace.
+         */
+        HOLD,
+        /**
+         * Keep showing the current slide and skip the late one, the slide after it is shown when the next slide is due.
+         */
+        SKIP,
+        /**
+         * Keep showing the current slide until the next one is decoded, then show it for the full delay. Every slide
+         * after it is shown that much later.
+         */
+        EXTEND
+    }
 
-    private List<Slide> images = new ArrayList<>();
+    private final Playlist images = new Playlist();
     private int currentSlideIndex = 0;
     private double slideShowDelay = 1.0;
-    private double currentSlideShowDelay;
-    private ImageView imageView;
-    private ExecutorService executorService;
+    private double viewportWidth = defaultViewportWidth;
+    private double viewportHeight = defaultViewportHeight;
+    private SlidePresenter presenter;
+    private final List<SlideshowListener> listeners = new CopyOnWriteArrayList<>();
+    private final SlidePrefetcher prefetcher = new SlidePrefetcher();
+    private final boolean progressive = Boolean.parseBoolean(System.getProperty("imageviewer.progressive", "true"));
+    private Slide loadingSlide;
+    private CompletableFuture<Image> loadingImage;
+    private CompletableFuture<Image> loadingPreview;
+    private long showSequence;
+    private String shownFilePath;
+    private boolean shownIsPreview;
+    private DeadlinePolicy deadlinePolicy = getDefaultDeadlinePolicy();
+    private Slide backBufferSlide;
+    private CompletableFuture<Image> backBuffer;
+    private CompletableFuture<Image> awaitedBackBuffer;
+    private long awaitedDueTime;
+    private int advanceStep = 1;
+    private long missedDeadlineCount;
+    private final Metrics.Counter missedDeadlines = Metrics.getInstance().counter("advance.missedDeadlines");
+    private final Metrics.Counter skippedSlides = Metrics.getInstance().counter("advance.skipped");
+    private final LatencyHistogram lateness = Metrics.getInstance().histogram("advance.lateness");
+    private ScheduledFuture<?> scheduledAdvance;
+    private long nextAdvanceTime;
+    private long remainingDelay;
+    private boolean started;
     private boolean paused;
 
     private static SlideshowManager instance;
@@ -28,6 +85,12 @@ public class SlideshowManager extends Task {
     public static final String slideshowStartedMessage = "slideshowStarted";
     public static final String slideshowStoppedMessage = "slideshowStopped";
 
+    /**
+     * The viewport size used until the image view reports its own. (Matches the image view in ImageViewerWindow.fxml.)
+     */
+    public static final double defaultViewportWidth = 1090;
+    public static final double defaultViewportHeight = 647;
+
     public SlideshowManager() {
         initialize();
     }
@@ -36,14 +99,14 @@ public class SlideshowManager extends Task {
 
     }
 
-    public SlideshowManager(ImageView imageView) {
+    public SlideshowManager(SlidePresenter presenter) {
         initialize();
-        setImageView(imageView);
+        setPresenter(presenter);
     }
 
-    public SlideshowManager(ImageView imageView, ArrayList<Slide> images) {
+    public SlideshowManager(SlidePresenter presenter, ArrayList<Slide> images) {
         initialize();
-        setImageView(imageView);
+        setPresenter(presenter);
         addSlides(images);
     }
 
@@ -52,23 +115,29 @@ public class SlideshowManager extends Task {
      *
      * @param path The path to image.
      */
-    public void addSlide(String path) {
-        var file = new File(path);
-        if (file.exists()) {
-            // Proceed to add this file.
-            images.add(new Slide(path));
+    public synchronized void addSlide(String path) {
+        // The slide only stats the file, decoding happens once it is shown.
+        var slide = new Slide(path);
+        if (slide.isLoaded()) {
+            // Proceed to add this file, unless it's already in the slideshow.
+            images.add(slide);
         } else
-            System.out.println(String.format("The file %s doesn't exist! You sure you're okay bro????", file.getPath()));
+            Logger.getInstance().warn("The file %s doesn't exist! You sure you're okay bro????", path);
     }
 
     /**
-     * Add an array of slides.
+     * Add a list of slides. Slides whose file is already in the slideshow are skipped.
      *
-     * @param slides The array of slides to add.
+     * @param slides The list of slides to add.
+     * @return Returns the amount of slides added.
      */
-    public void addSlides(ArrayList<Slide> slides) {
-        if (slides != null && !slides.isEmpty())
-            images.addAll(slides);
+    public synchronized int addSlides(List<Slide> slides) {
+        var added = 0;
+        if (slides != null) {
+            for (var slide : slides)
+                if (images.add(slide)) added++;
+        }
+        return added;
     }
 
     /**
@@ -78,9 +147,7 @@ public class SlideshowManager extends Task {
      */
     public Slide getCurrentSlide() {
         if (hasSlide(currentSlideIndex)) {
-            var slide = images.get(currentSlideIndex);
-            setImage(slide.getImage());
-            return slide;
+            return images.get(currentSlideIndex);
         }
         return null;
     }
@@ -91,12 +158,8 @@ public class SlideshowManager extends Task {
      * @param path The path of the slide.
      * @return Returns true if removed otherwise false.
      */
-    public boolean removeSlide(String path) {
-        if (hasSlide(path)) {
-            images.remove(getSlide(path));
-            return true;
-        }
-        return false;
+    public synchronized boolean removeSlide(String path) {
+        return removeSlide(images.indexOf(path));
     }
 
     /**
@@ -105,14 +168,73 @@ public class SlideshowManager extends Task {
      * @param index The index of the slide. (This should refer to the index in the image array.)
      * @return Returns true if removed otherwise false.
      */
-    public boolean removeSlide(int index) {
+    public synchronized boolean removeSlide(int index) {
         if (hasSlide(index)) {
             images.remove(index);
+            // Stay on the same slide when one before it goes.
+            if (index < currentSlideIndex) currentSlideIndex--;
             return true;
         }
         return false;
     }
 
+    /**
+     * Bring the slides up to date with files that changed on disk. Removed files leave the slideshow, changed files
+     * replace their slide in place and new files are added at the end. If the current slide was removed or changed,
+     * the slide now at its position is shown.
+     *
+     * @param changed      The slides of files that were added or changed. Slides whose file size and modification time
+     *                     match the slide in the slideshow are left alone.
+     * @param removedPaths The file paths of files that were removed.
+     * @return Returns the amount of slides added, removed or reloaded.
+     */
+    public synchronized int applyFileChanges(List<Slide> changed, List<String> removedPaths) {
+        var metrics = Metrics.getInstance();
+        var applied = 0;
+        var currentChanged = false;
+        var backBufferPath = backBufferSlide != null ? backBufferSlide.getFilePath() : null;
+        var backBufferChanged = false;
+
+        for (var path : removedPaths) {
+            var index = images.indexOf(path);
+            if (index < 0) continue;
+
+            currentChanged |= index == currentSlideIndex;
+            var filePath = images.getFilePath(index);
+            backBufferChanged |= filePath.equals(backBufferPath);
+            removeSlide(index);
+            ImageCache.getInstance().invalidate(filePath);
+            metrics.counter("watch.removed").increment();
+            applied++;
+        }
+        for (var slide : changed) {
+            var index = images.indexOf(slide.getFilePath());
+            if (index < 0) {
+                images.add(slide);
+                metrics.counter("watch.added").increment();
+            } else if (images.getFileSize(index) != slide.getFileSize() || images.getLastModified(index) != slide.getLastModified()) {
+                // The thumbnail store notices the new size and modification time by itself.
+                images.replace(slide);
+                ImageCache.getInstance().invalidate(slide.getFilePath());
+                currentChanged |= index == currentSlideIndex;
+                backBufferChanged |= slide.getFilePath().equals(backBufferPath);
+                metrics.counter("watch.reloaded").increment();
+            } else continue;
+            applied++;
+        }
+        if (applied == 0) return 0;
+
+        if (currentSlideIndex >= images.size()) currentSlideIndex = 0;
+        // The back buffer holds the old file's decode, decode the slide now next again.
+        if (backBufferChanged) {
+            clearBackBuffer();
+            if (started) fillBackBuffer();
+        }
+        for (var listener : listeners) listener.slidesChanged();
+        if (currentChanged && hasSlide(currentSlideIndex)) move(0, System.nanoTime());
+        return applied;
+    }
+
     /**
      * Does a slide with the specified file path exist?
      *
@@ -120,7 +242,7 @@ public class SlideshowManager extends Task {
      * @return Returns true if exists otherwise false.
      */
     public boolean hasSlide(String path) {
-        return getSlide(path) != null;
+        return images.contains(path);
     }
 
     /**
@@ -133,6 +255,34 @@ public class SlideshowManager extends Task {
         return getSlide(index) != null;
     }
 
+    /**
+     * Save the slides, the current slide and the slideshow delay to a playlist file.
+     *
+     * @param file The file to save to.
+     * @throws IOException If the file couldn't be written.
+     */
+    public synchronized void savePlaylist(Path file) throws IOException {
+        PlaylistFile.save(file, images, currentSlideIndex, slideShowDelay);
+    }
+
+    /**
+     * Replace the slides with the ones in a playlist file and go to the slide that was shown when it was saved. A
+     * running slideshow is stopped. The image files aren't read until their slides are shown.
+     *
+     * @param file The file to open.
+     * @return Returns the opened playlist file.
+     * @throws IOException If the file couldn't be read.
+     */
+    public synchronized PlaylistFile openPlaylist(Path file) throws IOException {
+        stop();
+        prefetcher.cancel();
+        var playlistFile = PlaylistFile.open(file, images);
+        currentSlideIndex = hasSlide(playlistFile.getCurrentSlideIndex()) ? playlistFile.getCurrentSlideIndex() : 0;
+        setSlideShowDelay(playlistFile.getSlideShowDelay());
+        FolderWatcher.getInstance().watch(this);
+        return playlistFile;
+    }
+
     /**
      * Get a slide with the specified file path.
      *
@@ -140,12 +290,7 @@ public class SlideshowManager extends Task {
      * @return Returns null if no slide of said path is found.
      */
     public Slide getSlide(String path) {
-        for (int i = 0; i < images.size(); i++) {
-            var image = images.get(i);
-            if (image.getFilePath().equals(path))
-                return image;
-        }
-        return null;
+        return images.get(path);
     }
 
     /**
@@ -154,43 +299,97 @@ public class SlideshowManager extends Task {
      * @param index The index the desired slide. (This should refer to the index in the image array.)
      * @return Returns null if no slide of said path is found.
      */
-    public Slide getSlide(int index) {
-        if (images.size() > 0 && index <= images.size())
+    public synchronized Slide getSlide(int index) {
+        if (index >= 0 && index < images.size())
             return images.get(index);
         return null;
     }
 
     /**
-     * Set the slideshow delay time. (Max 5.)
+     * Set the slideshow delay time. (Max 5.) A running slideshow moves its next slide to the new delay counted from the
+     * last slide change.
      *
      * @param slideShowDelay The slide show delay in seconds.
      */
-    public void setSlideShowDelay(double slideShowDelay) {
+    public synchronized void setSlideShowDelay(double slideShowDelay) {
         if (slideShowDelay > 5) slideShowDelay = 5.0;
+        var difference = getSlideShowDelayNanos(slideShowDelay) - getSlideShowDelayNanos(this.slideShowDelay);
         this.slideShowDelay = slideShowDelay;
+
+        if (scheduledAdvance != null) {
+            scheduledAdvance.cancel(false);
+            scheduleAdvance(Math.max(0, nextAdvanceTime + difference - System.nanoTime()));
+        } else if (paused)
+            remainingDelay = Math.max(0, remainingDelay + difference);
+    }
+
+    /**
+     * Get the slideshow delay time.
+     *
+     * @return Returns the delay in seconds.
+     */
+    public double getSlideShowDelay() {
+        return slideShowDelay;
+    }
+
+    private static long getSlideShowDelayNanos(double slideShowDelay) {
+        return (long) (slideShowDelay * TimeUnit.SECONDS.toNanos(1));
     }
 
     /**
      * Show the next slide.
      *
-     * @return Returns the next slide.
+     * @return Returns the next slide, or null if there are no slides.
      */
     public synchronized Slide next() {
-        currentSlideIndex = (currentSlideIndex + 1) % images.size();
-        var slide = images.get(currentSlideIndex);
-        setImage(slide.getImage());
-        return slide;
+        return move(1, System.nanoTime());
     }
 
     /**
      * Show the previous slide.
      *
-     * @return Returns the previous slide.
+     * @return Returns the previous slide, or null if there are no slides.
      */
     public synchronized Slide previous() {
-        currentSlideIndex = (currentSlideIndex - 1 + images.size()) % images.size();
+        return move(-1, System.nanoTime());
+    }
+
+    /**
+     * Show the slide at an index, for example when it is picked in the filmstrip.
+     *
+     * @param index The index of the slide. (This should refer to the index in the images array.)
+     * @return Returns null if no slide of said index is found.
+     */
+    public synchronized Slide jumpTo(int index) {
+        if (!hasSlide(index)) return null;
+        return move(index - currentSlideIndex, System.nanoTime());
+    }
+
+    /**
+     * Get the index of the current slide.
+     *
+     * @return Returns the index in the images array.
+     */
+    public synchronized int getCurrentSlideIndex() {
+        return currentSlideIndex;
+    }
+
+    private Slide move(int step, long dueTime) {
+        return move(step, dueTime, null);
+    }
+
+    /**
+     * @param decoded The image of the slide moved to if it's already decoded, null to load it.
+     * @return Returns null if there are no slides, the folder watcher may have removed them all.
+     */
+    private Slide move(int step, long dueTime, Image decoded) {
+        if (images.isEmpty()) return null;
+
+        currentSlideIndex = Math.floorMod(currentSlideIndex + step, images.size());
         var slide = images.get(currentSlideIndex);
-        setImage(slide.getImage());
+        show(slide, dueTime, decoded);
+        if (started) fillBackBuffer();
+        for (var listener : listeners) listener.slideChanged(slide);
         return slide;
     }
 
@@ -202,28 +401,165 @@ public class SlideshowManager extends Task {
     public synchronized Slide showSlide() {
         var currentSlide = getCurrentSlide();
         if (currentSlide != null) {
-            setImage(currentSlide.getImage());
+            show(currentSlide, System.nanoTime());
             return currentSlide;
         }
         return null;
     }
 
     /**
-     * Get the image view.
+     * Decode a slide in the background and put it in the image view once it is ready, unless another slide has been
+     * selected in the meantime. Until then a preview of it is shown, and the decode of the slide shown before is
+     * cancelled if it didn't start yet. The slides around it are prefetched.
      *
-     * @return Returns the image view.
+     * @param slide   The slide to show. (Must be the current slide.)
+     * @param dueTime The System.nanoTime() at which the slide should be on screen.
+     */
+    private void show(Slide slide, long dueTime) {
+        show(slide, dueTime, null);
+    }
+
+    private void show(Slide slide, long dueTime, Image decoded) {
+        var sequence = ++showSequence;
+        var previousSlide = loadingSlide;
+        var previousLoad = loadingImage;
+        cancelPreview();
+
+        var load = decoded != null ? CompletableFuture.completedFuture(decoded) : slide.loadImage(viewportWidth, viewportHeight);
+        loadingSlide = decoded != null ? null : slide;
+        loadingImage = decoded != null ? null : load;
+        // Only give up on the slide shown before now, so a re-decode of the same slide keeps its place in the queue.
+        if (previousSlide != null) previousSlide.cancelLoad(previousLoad);
+        // A re-decode of the slide on screen (after a resize or a file change) keeps showing the old decode instead.
+        if (!load.isDone() && progressive && presenter != null && presenter.showsPreviews() && !isShown(slide)) {
+            loadingPreview = slide.loadPreview();
+            loadingPreview.thenAccept(preview -> presentPreview(slide, preview, sequence, dueTime));
+        }
+        load.thenAccept(image -> presentSlide(slide, image, dueTime));
+        prefetcher.update(images, currentSlideIndex, viewportWidth, viewportHeight);
+    }
+
+    /**
+     * Drop the preview of the slide that was being shown.
+     */
+    private void cancelPreview() {
+        if (loadingPreview != null) {
+            loadingPreview.cancel(false);
+            loadingPreview = null;
+        }
+    }
+
+    private synchronized void presentPreview(Slide slide, Image preview, long sequence, long dueTime) {
+        // The slide may have been moved on from, or been decoded before its preview.
+        if (preview == null || presenter == null || sequence != showSequence || isShown(slide)) return;
+        shownFilePath = slide.getFilePath();
+        shownIsPreview = true;
+        presenter.presentPreview(preview, dueTime);
+    }
+
+    private synchronized void presentSlide(Slide slide, Image image, long dueTime) {
+        if (image == null || !isCurrentSlide(slide)) return;
+        shownFilePath = slide.getFilePath();
+        shownIsPreview = false;
+        present(image, dueTime);
+    }
+
+    /**
+     * Is the slide itself on screen, rather than a preview of it or another slide?
      */
-    public ImageView getImageView() {
-        return imageView;
+    private boolean isShown(Slide slide) {
+        return !shownIsPreview && slide.getFilePath().equals(shownFilePath);
     }
 
     /**
-     * Set the image view.
+     * Get the prefetcher that decodes the slides around the current one, to tune how far it looks ahead.
      *
-     * @param imageView The image view to use.
+     * @return Returns the prefetcher.
      */
-    public void setImageView(ImageView imageView) {
-        this.imageView = imageView;
+    public SlidePrefetcher getPrefetcher() {
+        return prefetcher;
+    }
+
+    private synchronized boolean isCurrentSlide(Slide slide) {
+        // Compare paths, the playlist may have handed out a new handle for the same slide since.
+        return hasSlide(currentSlideIndex) && images.getFilePath(currentSlideIndex).equals(slide.getFilePath());
+    }
+
+    /**
+     * Set the size of the area the slides are shown in. The current slide is only re-decoded if it was decoded smaller
+     * than the new size needs, so shrinking the window or resizing within the current decode size is free.
+     *
+     * @param viewportWidth  The viewport width in device pixels. (Multiply by the zoom factor when zoomed in.)
+     * @param viewportHeight The viewport height in device pixels.
+     */
+    public synchronized void setViewportSize(double viewportWidth, double viewportHeight) {
+        if (viewportWidth <= 0 || viewportHeight <= 0) return;
+        this.viewportWidth = viewportWidth;
+        this.viewportHeight = viewportHeight;
+
+        if (hasSlide(currentSlideIndex)) {
+            var slide = images.get(currentSlideIndex);
+            if (slide.needsDecode(viewportWidth, viewportHeight))
+                show(slide, System.nanoTime());
+        }
+    }
+
+    /**
+     * Get the width of the area the slides are shown in.
+     *
+     * @return Returns the width in device pixels.
+     */
+    public synchronized double getViewportWidth() {
+        return viewportWidth;
+    }
+
+    /**
+     * Get the height of the area the slides are shown in.
+     *
+     * @return Returns the height in device pixels.
+     */
+    public synchronized double getViewportHeight() {
+        return viewportHeight;
+    }
+
+    /**
+     * Get the presenter that puts the slides on screen.
+     *
+     * @return Returns null if there is no presenter.
+     */
+    public SlidePresenter getPresenter() {
+        return presenter;
+    }
+
+    /**
+     * Set the presenter that puts the slides on screen. (An ImageViewPresenter in a window, a NullPresenter headless.)
+     *
+     * @param presenter The presenter to use.
+     */
+    public void setPresenter(SlidePresenter presenter) {
+        this.presenter = presenter;
+    }
+
+    /**
+     * Add a listener that is told when the current slide changes or the slideshow is started, paused or stopped.
+     *
+     * @param listener The listener to add.
+     */
+    public void addListener(SlideshowListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a listener.
+     *
+     * @param listener The listener to remove.
+     */
+    public void removeListener(SlideshowListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void updateMessage(String message) {
+        for (var listener : listeners) listener.messageChanged(message);
     }
 
     /**
@@ -232,7 +568,12 @@ public class SlideshowManager extends Task {
      * @param image The image to use.
      */
     protected void setImage(Image image) {
-        if (image != null) imageView.setImage(image);
+        present(image, System.nanoTime());
+    }
+
+    private void present(Image image, long dueTime) {
+        // Decodes finish on a background thread, the presenter hands the image over to the FX thread.
+        if (image != null && presenter != null) presenter.present(image, dueTime);
     }
 
     /**
@@ -241,86 +582,227 @@ public class SlideshowManager extends Task {
      * @param slide The slide to use.
      */
     protected void setImage(Slide slide) {
-        if (slide != null) imageView.setImage(slide.getImage());
+        if (slide != null) setImage(slide.getImage());
     }
 
     /**
      * Get all the available slides.
      *
-     * @return Returns null if no slides are found.
+     * @return Returns the playlist of the slideshow.
      */
-    public List<Slide> getSlides() {
+    public Playlist getSlides() {
         return images;
     }
 
     /**
-     * Start the slideshow thread. Please use start() to start the slideshow and not this!
+     * Get what the slideshow does when a slide isn't decoded when it is due.
+     *
+     * @return Returns the policy.
+     */
+    public synchronized DeadlinePolicy getDeadlinePolicy() {
+        return deadlinePolicy;
+    }
+
+    /**
+     * Set what the slideshow does when a slide isn't decoded when it is due. A slide already being waited for is shown
+     * once it is decoded either way.
+     *
+     * @param deadlinePolicy The policy to use.
+     */
+    public synchronized void setDeadlinePolicy(DeadlinePolicy deadlinePolicy) {
+        if (deadlinePolicy != null) this.deadlinePolicy = deadlinePolicy;
+    }
+
+    /**
+     * Get the policy slideshows use unless told otherwise: the imageviewer.deadlinePolicy system property, or HOLD.
+     *
+     * @return Returns the policy.
      */
-    @Override
-    protected Object call() throws Exception {
-        while (true) {
+    public static DeadlinePolicy getDefaultDeadlinePolicy() {
+        try {
+            return DeadlinePolicy.valueOf(System.getProperty("imageviewer.deadlinePolicy", "HOLD").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            Logger.getInstance().warn("Unknown deadline policy %s, holding late slides instead.", System.getProperty("imageviewer.deadlinePolicy"));
+            return DeadlinePolicy.HOLD;
+        }
+    }
+
+    /**
+     * Get the amount of times the slide this slideshow advanced to wasn't decoded when it was due.
+     *
+     * @return Returns the count.
+     */
+    public synchronized long getMissedDeadlineCount() {
+        return missedDeadlineCount;
+    }
 
-            try {
-                // If requested to kill the slideshow, stop.
-                if (executorService == null || executorService != null && (executorService.isTerminated() || executorService.isShutdown())) {
-                    Logger.getInstance().log("Executioner thread is either null, killed or shut down! Cannot go any further, man.");
-                    break;
-                }
+    /**
+     * Start decoding the slide the slideshow advances to next into the back buffer, unless it's already there.
+     */
+    private void fillBackBuffer() {
+        if (images.isEmpty()) {
+            clearBackBuffer();
+            return;
+        }
+
+        var next = images.get(Math.floorMod(currentSlideIndex + advanceStep, images.size()));
+        if (backBufferSlide != null && backBufferSlide.getFilePath().equals(next.getFilePath())) return;
+
+        // A late slide that was being waited for was replaced, for example by a jump. Stop waiting, the next slide is
+        // due a full delay from now.
+        if (awaitedBackBuffer != null) {
+            awaitedBackBuffer = null;
+            scheduleAdvance(getSlideShowDelayNanos(slideShowDelay));
+        }
+        clearBackBuffer();
+        backBufferSlide = next;
+        backBuffer = next.loadImage(viewportWidth, viewportHeight);
+    }
+
+    private void clearBackBuffer() {
+        // The decode isn't needed anymore, unless the slide became the current slide and waits for it itself.
+        if (backBufferSlide != null) backBufferSlide.cancelLoad(backBuffer);
+        backBufferSlide = null;
+        backBuffer = null;
+    }
 
-                // If paused don't do anything.
-                if (paused) {
-                    //Logger.getInstance().log(String.format("%s is paused.", getClass().getSimpleName()));
-                    Thread.sleep(500);
-                    continue;
-                }
+    private void awaitBackBuffer(long dueTime) {
+        var awaited = backBuffer;
+        awaitedBackBuffer = awaited;
+        awaitedDueTime = dueTime;
+        // Not on the thread completing or cancelling the decode, it may hold the locks of a slide or another slideshow.
+        awaited.whenCompleteAsync((image, e) -> advanceLate(awaited), SlideshowScheduler.getInstance()::execute);
+    }
 
-                // The timer is in seconds!
-                if (currentSlideShowDelay < slideShowDelay) {
-                    currentSlideShowDelay++;
+    /**
+     * Advance the slideshow. This is run on the shared slideshow scheduler each time a slide is due. The slide in the
+     * back buffer is swapped in if it's decoded, otherwise the deadline policy decides.
+     */
+    private synchronized void advance() {
+        // A pause or stop may have raced with the scheduler picking this advance up.
+        if (!started || paused) return;
+
+        scheduledAdvance = null;
+        var delay = getSlideShowDelayNanos(slideShowDelay);
+        try {
+            // The folder watcher may have removed every slide.
+            if (images.isEmpty()) {
+                scheduleAdvance(delay);
+                return;
+            }
 
-                } else {
-                    // When the time has passed show the next slide and reset the current slideshow timer.
-                    currentSlideShowDelay = 0;
+            // The slides may have changed since the back buffer was filled.
+            fillBackBuffer();
+            if (backBuffer.isDone()) {
+                swapBackBuffer(nextAdvanceTime);
+                scheduleAdvance(delay);
+                return;
+            }
 
-                    //Logger.getInstance().log("Slideshow time passed, showing next slide.");
-                    updateValue(next());
-                }
+            missedDeadlineCount++;
+            missedDeadlines.increment();
+            // Skipping needs a slide other than the current one to skip to.
+            if (deadlinePolicy == DeadlinePolicy.SKIP && advanceStep + 1 < images.size()) {
+                // A decode of the late slide that already started finishes, it's cached for the next time around.
+                skippedSlides.increment();
+                advanceStep++;
+                fillBackBuffer();
+                scheduleAdvance(delay);
+            } else awaitBackBuffer(nextAdvanceTime);
+        } catch (RuntimeException e) {
+            Logger.getInstance().error("Couldn't advance the slideshow: %s", e);
+            scheduleAdvance(delay);
+        }
+    }
 
-                //Logger.getInstance().log(String.format("Current slideshow time: %.2f, desired: %.2f.", currentSlideShowDelay, slideShowDelay));
-                Thread.sleep(1000);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+    /**
+     * Show a slide that wasn't decoded when it was due, now that it is.
+     */
+    private synchronized void advanceLate(CompletableFuture<Image> awaited) {
+        // Paused, stopped or replaced by another wait in the meantime.
+        if (awaitedBackBuffer != awaited || !started || paused) return;
+
+        awaitedBackBuffer = null;
+        var now = System.nanoTime();
+        var dueTime = awaitedDueTime;
+        lateness.record(now - dueTime);
+
+        var delay = getSlideShowDelayNanos(slideShowDelay);
+        try {
+            if (!images.isEmpty()) {
+                fillBackBuffer();
+                swapBackBuffer(deadlinePolicy == DeadlinePolicy.EXTEND ? now : dueTime);
             }
+        } catch (RuntimeException e) {
+            Logger.getInstance().error("Couldn't advance the slideshow: %s", e);
         }
-        return null;
+        // Holding keeps the pace, extending gives the late slide its full delay.
+        scheduleAdvance(deadlinePolicy == DeadlinePolicy.HOLD ? Math.max(0, dueTime + delay - now) : delay);
+    }
+
+    /**
+     * Show the slide in the back buffer and start decoding the one after it.
+     */
+    private void swapBackBuffer(long dueTime) {
+        var step = advanceStep;
+        Image decoded = null;
+        if (backBuffer.isDone() && !backBuffer.isCompletedExceptionally()) decoded = backBuffer.join();
+        advanceStep = 1;
+        // Show the decoded image itself, the image cache may have evicted it since.
+        move(step, dueTime, decoded);
+    }
+
+    private void scheduleAdvance(long delayNanos) {
+        nextAdvanceTime = System.nanoTime() + delayNanos;
+        scheduledAdvance = SlideshowScheduler.getInstance().schedule(this::advance, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void cancelAdvance() {
+        if (scheduledAdvance != null) {
+            scheduledAdvance.cancel(false);
+            scheduledAdvance = null;
+        }
+        awaitedBackBuffer = null;
     }
 
     /**
      * Start the slideshow.
      */
-    public void start() {
-        if (executorService != null && (!executorService.isTerminated() || !executorService.isShutdown())) {
+    public synchronized void start() {
+        if (started) {
             updateMessage(cannotStartMessage);
             return;
         } else if (images.size() <= 0) {
-            Logger.getInstance().log("No slides found! Please add some first.");
+            Logger.getInstance().warn("No slides found! Please add some first.");
             updateMessage(cannotStartMessage);
             return;
         }
 
+        started = true;
+        paused = false;
+        advanceStep = 1;
+        fillBackBuffer();
         updateMessage(slideshowStartedMessage);
-        executorService = Executors.newSingleThreadExecutor();
-        executorService.submit(this);
+        scheduleAdvance(getSlideShowDelayNanos(slideShowDelay));
         //Logger.getInstance().log("Starting slideshow thread!");
 
     }
 
     /**
-     * Pause the slideshow.
+     * Pause the slideshow. A paused slideshow has nothing scheduled, the time left until the next slide is kept for
+     * unpause().
      */
-    public void pause() {
+    public synchronized void pause() {
         if (!paused) {
             paused = true;
+            if (scheduledAdvance != null) {
+                remainingDelay = Math.max(0, nextAdvanceTime - System.nanoTime());
+                cancelAdvance();
+            } else {
+                // Waiting for a late slide, or not started.
+                remainingDelay = getSlideShowDelayNanos(slideShowDelay);
+                awaitedBackBuffer = null;
+            }
             updateMessage(slideshowStoppedMessage);
         }
     }
@@ -328,32 +810,41 @@ public class SlideshowManager extends Task {
     /**
      * Unpause the slideshow.
      */
-    public void unpause() {
+    public synchronized void unpause() {
         if (paused) {
             paused = false;
+            if (started) scheduleAdvance(remainingDelay);
             updateMessage(slideshowStartedMessage);
             //Logger.getInstance().log("Unpaused.");
         }
     }
 
     /**
-     * Stop the slideshow entirely. This will not allow restarts. Use pause() instead.
+     * Stop the slideshow entirely. Use pause() to be able to continue where it left off.
      */
-    public void stop() {
-        if (executorService != null) {
-            executorService.shutdown();
+    public synchronized void stop() {
+        if (started) {
+            started = false;
+            cancelAdvance();
+            clearBackBuffer();
+            prefetcher.cancel();
             updateMessage(slideshowStoppedMessage);
-            Logger.getInstance().log("Killed slideshow thread.");
+            Logger.getInstance().info("Stopped slideshow.");
+            if (presenter != null) {
+                Logger.getInstance().info("Slide due to on screen latency: %s", presenter.getLatency());
+                Logger.getInstance().info("Slide due to first image latency: %s", presenter.getPerceivedLatency());
+            }
+            Logger.getInstance().info("Slides not decoded when due: %d (%s).", missedDeadlineCount, deadlinePolicy);
         }
     }
 
     /**
-     * Is the slideshow thread started?
+     * Is the slideshow started?
      *
      * @return Returns true if yes otherwise false.
      */
-    public boolean isSlideshowStarted() {
-        return executorService != null && (!executorService.isShutdown() || !executorService.isTerminated());
+    public synchronized boolean isSlideshowStarted() {
+        return started;
     }
 
     /**
@@ -0,0 +1,87 @@
+package bll;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SlideshowScheduler {
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    private static SlideshowScheduler instance;
+
+    public SlideshowScheduler() {
+        this(1);
+    }
+
+    public SlideshowScheduler(int threads) {
+        var threadCount = new AtomicInteger();
+        executor = new ScheduledThreadPoolExecutor(threads, runnable -> {
+            var thread = new Thread(runnable, "slideshow-scheduler-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Paused slideshows cancel their next advance, don't keep those around until they would've been due.
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Run a task once it is due. Tasks share the scheduler thread(s) with every other slideshow, so they must not block;
+     * hand decoding and other slow work to the SlideLoader.
+     *
+     * @param task  The task to run.
+     * @param delay The time from now until the task is due.
+     * @param unit  The unit of the delay.
+     * @return Returns the scheduled task, which can be cancelled.
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        return executor.schedule(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // Don't let one slideshow's failure go unnoticed, the exception would otherwise only end up in the future.
+                Logger.getInstance().error("Scheduled slideshow task failed: %s", Logger.getStackTrace(e));
+            }
+        }, delay, unit);
+    }
+
+    /**
+     * Run a task on the scheduler as soon as possible, for example to continue on it once a decode completes.
+     *
+     * @param task The task to run.
+     */
+    public void execute(Runnable task) {
+        schedule(task, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the amount of tasks waiting to become due.
+     *
+     * @return Returns the amount.
+     */
+    public int getScheduledCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Get the amount of threads the scheduler runs its tasks on.
+     *
+     * @return Returns the amount.
+     */
+    public int getThreadCount() {
+        return executor.getPoolSize();
+    }
+
+    /**
+     * Get the singleton instance.
+     */
+    public static synchronized SlideshowScheduler getInstance() {
+        if (instance == null) {
+            var scheduler = new SlideshowScheduler();
+            Metrics.getInstance().gauge("scheduler.queue", scheduler::getScheduledCount);
+            instance = scheduler;
+        }
+        return instance;
+    }
+}
@@ -0,0 +1,160 @@
+package bll;
+
+import javafx.application.Platform;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Times the phases of starting the image viewer, counted from the start of the JVM. Each phase is marked the first
+ * time it's reached, later marks cost one check. Once the first slide is on screen the times are logged and appended
+ * to startup-times.csv in the data folder, so the time to the first image can be compared between versions.
+ */
+public class StartupTimer {
+
+    /**
+     * The phases of starting up, in the order they're normally reached.
+     */
+    public enum Phase {
+        MAIN("main"),
+        FX_INIT("javafx init"),
+        FXML_LOADED("fxml load"),
+        SESSION_RESTORED("session restore"),
+        FIRST_DECODE("first decode"),
+        FIRST_PAINT("first paint");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Get the name of the phase as it is logged.
+         *
+         * @return Returns the label.
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * The file the startup times are appended to.
+     */
+    public static final String timesFileName = "startup-times.csv";
+
+    /**
+     * How long runAfterFirstPaint() waits for the first slide before running anyway.
+     */
+    public static final long firstPaintTimeoutMillis = 2000;
+
+    private final long jvmStartNanos;
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private final CompletableFuture<?>[] reached = new CompletableFuture<?>[Phase.values().length];
+
+    private static StartupTimer instance;
+
+    public StartupTimer() {
+        jvmStartNanos = System.nanoTime() - ManagementFactory.getRuntimeMXBean().getUptime() * 1_000_000;
+        Arrays.fill(phaseNanos, -1);
+        Arrays.setAll(reached, i -> new CompletableFuture<Void>());
+    }
+
+    /**
+     * Mark a phase as reached now. Only the first mark of a phase counts.
+     *
+     * @param phase The phase that was reached.
+     */
+    public void mark(Phase phase) {
+        if (reached[phase.ordinal()].isDone()) return;
+
+        synchronized (this) {
+            if (phaseNanos[phase.ordinal()] >= 0) return;
+            phaseNanos[phase.ordinal()] = System.nanoTime() - jvmStartNanos;
+        }
+        reached[phase.ordinal()].complete(null);
+
+        if (phase == Phase.FIRST_PAINT) {
+            Logger.getInstance().info("Startup: %s", this);
+            CompletableFuture.runAsync(this::appendTimes);
+        }
+    }
+
+    /**
+     * Get a future that completes when a phase is reached.
+     *
+     * @param phase The phase to wait for.
+     * @return Returns the future, don't complete it.
+     */
+    public CompletableFuture<?> reached(Phase phase) {
+        return reached[phase.ordinal()];
+    }
+
+    /**
+     * Run something on the FX thread once the first slide is on screen, to keep it from delaying the first slide. If no
+     * slide gets on screen in time, for example because it can't be decoded, it runs anyway.
+     *
+     * @param runnable The work to run.
+     */
+    public void runAfterFirstPaint(Runnable runnable) {
+        reached(Phase.FIRST_PAINT).copy()
+                .completeOnTimeout(null, firstPaintTimeoutMillis, TimeUnit.MILLISECONDS)
+                .thenRun(() -> Platform.runLater(runnable));
+    }
+
+    /**
+     * Get the time a phase was reached.
+     *
+     * @param phase The phase.
+     * @return Returns the milliseconds since the JVM started, or -1 if the phase wasn't reached.
+     */
+    public synchronized double getMillis(Phase phase) {
+        var nanos = phaseNanos[phase.ordinal()];
+        return nanos >= 0 ? nanos / 1e6 : -1;
+    }
+
+    private void appendTimes() {
+        var file = DataFolder.resolve(timesFileName);
+        var line = new StringBuilder(LocalDateTime.now().withNano(0).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
+                .append(',').append(System.getProperty("java.version"));
+        for (var phase : Phase.values())
+            line.append(',').append(String.format(Locale.ROOT, "%.1f", getMillis(phase)));
+        line.append(System.lineSeparator());
+
+        try {
+            Files.createDirectories(file.getParent());
+            if (Files.notExists(file)) {
+                var header = "date,java," + Arrays.stream(Phase.values()).map(Phase::getLabel).collect(Collectors.joining(","));
+                Files.writeString(file, header + System.lineSeparator(), StandardOpenOption.CREATE_NEW);
+            }
+            Files.writeString(file, line, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            Logger.getInstance().warn("Couldn't write the startup times: %s", e);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return Arrays.stream(Phase.values())
+                .filter(phase -> phaseNanos[phase.ordinal()] >= 0)
+                .map(phase -> String.format("%s %.0f ms", phase.getLabel(), phaseNanos[phase.ordinal()] / 1e6))
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Get the singleton instance.
+     */
+    public static synchronized StartupTimer getInstance() {
+        return instance == null ? instance = new StartupTimer() : instance;
+    }
+}
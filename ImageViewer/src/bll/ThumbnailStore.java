@@ -0,0 +1,481 @@
+package bll;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps small previews of images in an append-only pack file, so an overview of a playlist only decodes each image
+ * once, ever. Thumbnails are keyed by file path, size and modification time: a thumbnail whose source file changed
+ * is ignored and made again. The pack is memory-mapped and thumbnails are handed to JavaFX straight from the mapping,
+ * without copying or decoding.
+ * <p>
+ * The pack is a header followed by records, each holding the key, the thumbnail size and its premultiplied BGRA
+ * pixels. Records never cross a segment boundary so every segment can be mapped on its own. A record for a path
+ * replaces the earlier ones, the stale records are dropped when the pack is compacted on opening.
+ */
+public class ThumbnailStore {
+
+    /**
+     * The longest edge of a thumbnail in pixels.
+     */
+    public static final int thumbnailSize = 160;
+
+    /**
+     * The size of the independently mapped parts of the pack.
+     */
+    public static final int segmentBytes = 256 * 1024 * 1024;
+
+    /**
+     * The pack is compacted when opened if at least this much of it is stale.
+     */
+    public static final long compactThresholdBytes = 64L * 1024 * 1024;
+
+    private static final int packMagic = 0x49565448; // IVTH
+    private static final int packVersion = 1;
+    private static final int packHeaderBytes = 8;
+    private static final int recordMagic = 0x54484D42; // THMB
+    // Magic, path length, file size, last modified, width, height.
+    private static final int recordHeaderBytes = 4 + 4 + 8 + 8 + 4 + 4;
+
+    private final Path packFile;
+    private final ConcurrentHashMap<String, Entry> index = new ConcurrentHashMap<>();
+    private final Object appendLock = new Object();
+    private FileChannel channel;
+    private FileLock lock;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private long endPosition;
+    private long staleBytes;
+    private boolean writable;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // Volatile so getOpenInstance() can look without waiting for getInstance() to finish opening the pack.
+    private static volatile ThumbnailStore instance;
+    private static final AtomicBoolean opening = new AtomicBoolean();
+
+    public ThumbnailStore() {
+        this(getDefaultPackFile());
+    }
+
+    public ThumbnailStore(Path packFile) {
+        this.packFile = packFile;
+        try {
+            open();
+            if (writable && staleBytes >= compactThresholdBytes && staleBytes > endPosition / 2)
+                compact();
+        } catch (IOException e) {
+            // Thumbnails still work, they just aren't kept.
+            Logger.getInstance().warn("Couldn't open the thumbnail pack %s: %s", packFile, e);
+            closeChannel();
+        }
+    }
+
+    /**
+     * Get the pack file used unless the imageviewer.thumbnailPack system property says otherwise.
+     *
+     * @return Returns the path of the pack file in the data folder.
+     */
+    public static Path getDefaultPackFile() {
+        var property = System.getProperty("imageviewer.thumbnailPack");
+        return property != null ? Path.of(property) : DataFolder.resolve("thumbnails.pack");
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(packFile.toAbsolutePath().getParent());
+        channel = FileChannel.open(packFile, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        // Another viewer is writing to the pack, use what's in it but don't add to it.
+        writable = lock != null;
+
+        var size = channel.size();
+        if (size < packHeaderBytes || !hasPackHeader()) {
+            if (!writable) throw new IOException("the pack is in use and has no valid header");
+            channel.truncate(0);
+            channel.write(ByteBuffer.allocate(packHeaderBytes).putInt(packMagic).putInt(packVersion).flip(), 0);
+            size = packHeaderBytes;
+        }
+
+        endPosition = scan(size);
+        // A record cut off by a crash is dropped.
+        if (writable && endPosition < size) channel.truncate(endPosition);
+    }
+
+    private boolean hasPackHeader() throws IOException {
+        var header = ByteBuffer.allocate(packHeaderBytes);
+        channel.read(header, 0);
+        return header.getInt(0) == packMagic && header.getInt(4) == packVersion;
+    }
+
+    /**
+     * Index the records of the pack.
+     *
+     * @return Returns the position after the last complete record.
+     */
+    private long scan(long size) throws IOException {
+        var position = (long) packHeaderBytes;
+        while (position + recordHeaderBytes <= size) {
+            var offset = (int) (position % segmentBytes);
+            if (offset + recordHeaderBytes > segmentBytes) {
+                position = nextSegment(position);
+                continue;
+            }
+
+            var segment = getSegment(position, recordHeaderBytes);
+            if (segment == null) break;
+            if (segment.getInt(offset) == 0) {
+                // The rest of the segment is padding.
+                position = nextSegment(position);
+                continue;
+            }
+            if (segment.getInt(offset) != recordMagic) break;
+
+            var pathLength = segment.getInt(offset + 4);
+            var fileSize = segment.getLong(offset + 8);
+            var lastModified = segment.getLong(offset + 16);
+            var width = segment.getInt(offset + 24);
+            var height = segment.getInt(offset + 28);
+            var recordBytes = recordBytes(pathLength, width, height);
+            if (pathLength <= 0 || width <= 0 || height <= 0 || recordBytes <= 0 || offset + recordBytes > segmentBytes || position + recordBytes > size)
+                break;
+
+            segment = getSegment(position, recordBytes);
+            var pathBytes = new byte[pathLength];
+            segment.get(offset + recordHeaderBytes, pathBytes);
+            var entry = new Entry(fileSize, lastModified, width, height, position + recordHeaderBytes + pathLength, recordBytes);
+            var replaced = index.put(new String(pathBytes, StandardCharsets.UTF_8), entry);
+            if (replaced != null) staleBytes += replaced.recordBytes;
+
+            position += recordBytes;
+        }
+        return Math.min(position, size);
+    }
+
+    /**
+     * Rewrite the pack with only its current records.
+     */
+    private void compact() throws IOException {
+        var compacted = packFile.resolveSibling(packFile.getFileName() + ".tmp");
+        var before = endPosition;
+        try (var out = FileChannel.open(compacted, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(ByteBuffer.allocate(packHeaderBytes).putInt(packMagic).putInt(packVersion).flip(), 0);
+            var position = (long) packHeaderBytes;
+            for (var mapping : index.entrySet()) {
+                var entry = mapping.getValue();
+                var pathBytes = mapping.getKey().getBytes(StandardCharsets.UTF_8);
+                position = alignRecord(position, entry.recordBytes);
+                writeRecord(out, position, pathBytes, entry.fileSize, entry.lastModified, entry.width, entry.height, getPixels(entry));
+                position += entry.recordBytes;
+            }
+        }
+
+        closeChannel();
+        index.clear();
+        staleBytes = 0;
+        try {
+            Files.move(compacted, packFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Windows won't replace a file that is still mapped, keep the old pack until next time.
+            Files.deleteIfExists(compacted);
+            Logger.getInstance().warn("Couldn't compact the thumbnail pack: %s", e);
+        }
+        open();
+        Logger.getInstance().info("Compacted the thumbnail pack from %d to %d MB.", before >> 20, endPosition >> 20);
+    }
+
+    /**
+     * Get the thumbnail of an image from the pack.
+     *
+     * @param filePath     The normalized file path of the image.
+     * @param fileSize     The size of the image file in bytes.
+     * @param lastModified The last modification time of the image file in milliseconds since the epoch.
+     * @return Returns null if there is no thumbnail for this version of the file.
+     */
+    public Image getThumbnail(String filePath, long fileSize, long lastModified) {
+        var entry = index.get(filePath);
+        if (entry != null && (entry.fileSize != fileSize || entry.lastModified != lastModified)) {
+            // The file changed since its thumbnail was made.
+            invalidate(filePath);
+            entry = null;
+        }
+        var pixels = entry != null ? getPixels(entry) : null;
+        if (pixels == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return new WritableImage(new PixelBuffer<>(entry.width, entry.height, pixels, PixelFormat.getByteBgraPreInstance()));
+    }
+
+    /**
+     * Get the thumbnail of an image, making it in the background if it isn't in the pack yet.
+     *
+     * @param filePath     The normalized file path of the image.
+     * @param fileSize     The size of the image file in bytes.
+     * @param lastModified The last modification time of the image file in milliseconds since the epoch.
+     * @return Returns a future that completes with the thumbnail, or with null if the image couldn't be decoded.
+     * Cancelling it before the thumbnail is made removes it from the decode queue.
+     */
+    public CompletableFuture<Image> loadThumbnail(String filePath, long fileSize, long lastModified) {
+        return loadThumbnail(filePath, fileSize, lastModified, SlideLoader.thumbnailPriority);
+    }
+
+    /**
+     * Get the thumbnail of an image, making it in the background at a priority if it isn't in the pack yet.
+     *
+     * @param filePath     The normalized file path of the image.
+     * @param fileSize     The size of the image file in bytes.
+     * @param lastModified The last modification time of the image file in milliseconds since the epoch.
+     * @param priority     The decode priority. (See SlideLoader.)
+     * @return Returns a future that completes with the thumbnail, or with null if the image couldn't be decoded.
+     * Cancelling it before the thumbnail is made removes it from the decode queue.
+     */
+    public CompletableFuture<Image> loadThumbnail(String filePath, long fileSize, long lastModified, int priority) {
+        var thumbnail = getThumbnail(filePath, fileSize, lastModified);
+        if (thumbnail != null) return CompletableFuture.completedFuture(thumbnail);
+
+        return SlideLoader.getInstance().submit(() -> createThumbnail(filePath, fileSize, lastModified), priority);
+    }
+
+    private Image createThumbnail(String filePath, long fileSize, long lastModified) {
+        var image = ImageDecoder.decodePreview(new File(filePath), thumbnailSize, 0, 0);
+        if (image == null || image.isError()) {
+            Logger.getInstance().warn("Couldn't make a thumbnail of %s: %s", filePath, image != null ? image.getException() : "unsupported or unreadable file");
+            return null;
+        }
+
+        var width = (int) image.getWidth();
+        var height = (int) image.getHeight();
+        var pixels = new byte[width * height * 4];
+        image.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getByteBgraPreInstance(), pixels, 0, width * 4);
+        append(filePath, fileSize, lastModified, width, height, ByteBuffer.wrap(pixels));
+        return image;
+    }
+
+    private void append(String filePath, long fileSize, long lastModified, int width, int height, ByteBuffer pixels) {
+        var pathBytes = filePath.getBytes(StandardCharsets.UTF_8);
+        var recordBytes = recordBytes(pathBytes.length, width, height);
+
+        synchronized (appendLock) {
+            if (!writable || channel == null) return;
+            try {
+                var position = alignRecord(endPosition, recordBytes);
+                writeRecord(channel, position, pathBytes, fileSize, lastModified, width, height, pixels);
+                endPosition = position + recordBytes;
+
+                var replaced = index.put(filePath, new Entry(fileSize, lastModified, width, height, position + recordHeaderBytes + pathBytes.length, recordBytes));
+                if (replaced != null) staleBytes += replaced.recordBytes;
+            } catch (IOException e) {
+                Logger.getInstance().warn("Couldn't write to the thumbnail pack, no longer adding to it: %s", e);
+                writable = false;
+            }
+        }
+    }
+
+    private static void writeRecord(FileChannel out, long position, byte[] pathBytes, long fileSize, long lastModified,
+                                    int width, int height, ByteBuffer pixels) throws IOException {
+        var header = ByteBuffer.allocate(recordHeaderBytes + pathBytes.length)
+                .putInt(recordMagic).putInt(pathBytes.length).putLong(fileSize).putLong(lastModified)
+                .putInt(width).putInt(height).put(pathBytes).flip();
+        while (header.hasRemaining()) position += out.write(header, position);
+        pixels = pixels.duplicate();
+        while (pixels.hasRemaining()) position += out.write(pixels, position);
+    }
+
+    /**
+     * Forget the thumbnail of an image, for example because the file changed.
+     *
+     * @param filePath The normalized file path of the image.
+     */
+    public void invalidate(String filePath) {
+        var removed = index.remove(filePath);
+        if (removed != null) {
+            synchronized (appendLock) {
+                staleBytes += removed.recordBytes;
+            }
+        }
+    }
+
+    private ByteBuffer getPixels(Entry entry) {
+        var length = entry.width * entry.height * 4;
+        var segment = getSegment(entry.pixelOffset, length);
+        if (segment == null) return null;
+
+        var offset = (int) (entry.pixelOffset % segmentBytes);
+        return segment.slice(offset, length);
+    }
+
+    /**
+     * Get the mapping of the segment holding a range of the pack, mapping it (again) if it doesn't cover the range.
+     */
+    private MappedByteBuffer getSegment(long position, int length) {
+        var segmentIndex = (int) (position / segmentBytes);
+        var end = (int) (position % segmentBytes) + length;
+        var mapped = segments;
+        if (segmentIndex < mapped.length && mapped[segmentIndex] != null && mapped[segmentIndex].capacity() >= end)
+            return mapped[segmentIndex];
+
+        synchronized (this) {
+            if (channel == null) return null;
+            try {
+                var start = (long) segmentIndex * segmentBytes;
+                var size = Math.min(segmentBytes, channel.size() - start);
+                if (size < end) return null;
+
+                mapped = segments.length > segmentIndex ? segments.clone() : Arrays.copyOf(segments, segmentIndex + 1);
+                mapped[segmentIndex] = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+                segments = mapped;
+                return mapped[segmentIndex];
+            } catch (IOException e) {
+                Logger.getInstance().warn("Couldn't map the thumbnail pack: %s", e);
+                return null;
+            }
+        }
+    }
+
+    private static int recordBytes(int pathLength, int width, int height) {
+        return recordHeaderBytes + pathLength + width * height * 4;
+    }
+
+    private static long alignRecord(long position, int recordBytes) {
+        // Leave the end of a segment empty rather than split a record across two mappings.
+        return position % segmentBytes + recordBytes > segmentBytes ? nextSegment(position) : position;
+    }
+
+    private static long nextSegment(long position) {
+        return (position / segmentBytes + 1) * segmentBytes;
+    }
+
+    private synchronized void closeChannel() {
+        segments = new MappedByteBuffer[0];
+        try {
+            if (lock != null) lock.release();
+            if (channel != null) channel.close();
+        } catch (IOException ignored) {
+        }
+        lock = null;
+        channel = null;
+    }
+
+    /**
+     * Get the amount of thumbnails in the pack.
+     *
+     * @return Returns the amount of current thumbnails.
+     */
+    public int getThumbnailCount() {
+        return index.size();
+    }
+
+    /**
+     * Get the size of the pack file.
+     *
+     * @return Returns the size in bytes, including stale thumbnails.
+     */
+    public long getPackBytes() {
+        synchronized (appendLock) {
+            return endPosition;
+        }
+    }
+
+    /**
+     * Get the amount of thumbnails that were read from the pack.
+     *
+     * @return Returns the amount of hits.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Get the amount of thumbnails that weren't in the pack and had to be made.
+     *
+     * @return Returns the amount of misses.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Are new thumbnails added to the pack? This isn't the case when another viewer has it open.
+     *
+     * @return Returns true if yes otherwise false.
+     */
+    public boolean isWritable() {
+        synchronized (appendLock) {
+            return writable && channel != null;
+        }
+    }
+
+    /**
+     * Get the singleton instance if the pack is open, otherwise start opening it on a decode thread. Opening reads the
+     * whole pack and may compact it, so use this rather than getInstance() where that must not be waited for, such as
+     * on the FX thread before the first slide is painted.
+     *
+     * @return Returns null until the pack is open.
+     */
+    public static ThumbnailStore getOpenInstance() {
+        var store = instance;
+        if (store == null && opening.compareAndSet(false, true))
+            SlideLoader.getInstance().submit(ThumbnailStore::getInstance, SlideLoader.thumbnailPriority);
+        return store;
+    }
+
+    /**
+     * Get the singleton instance, opening the pack if it isn't yet.
+     */
+    public static synchronized ThumbnailStore getInstance() {
+        if (instance == null) {
+            var store = new ThumbnailStore();
+            var metrics = Metrics.getInstance();
+            metrics.gauge("thumbnails.hits", store::getHitCount);
+            metrics.gauge("thumbnails.misses", store::getMissCount);
+            metrics.gauge("thumbnails.count", store::getThumbnailCount);
+            metrics.gauge("thumbnails.packBytes", store::getPackBytes);
+            instance = store;
+        }
+        return instance;
+    }
+
+    private static final class Entry {
+        private final long fileSize;
+        private final long lastModified;
+        private final int width;
+        private final int height;
+        private final long pixelOffset;
+        private final int recordBytes;
+
+        Entry(long fileSize, long lastModified, int width, int height, long pixelOffset, int recordBytes) {
+            this.fileSize = fileSize;
+            this.lastModified = lastModified;
+            this.width = width;
+            this.height = height;
+            this.pixelOffset = pixelOffset;
+            this.recordBytes = recordBytes;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package bll;
+
+import javafx.scene.image.Image;
+
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+/**
+ * Keeps the most recently used tiles of TilePyramids within a byte budget. Tiles are evicted least recently used
+ * first, so panning back to where one just was is instant while the tiles of images long gone make room.
+ */
+public class TileCache {
+
+    /**
+     * The byte budget used unless the imageviewer.tileCacheBytes system property says otherwise.
+     */
+    public static final long defaultByteBudget = 256L * 1024 * 1024;
+
+    // Access ordered, so iteration starts at the least recently used tile.
+    private final LinkedHashMap<Key, Image> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final long byteBudget;
+    private long bytesHeld;
+    private long hitCount;
+    private long missCount;
+
+    private static TileCache instance;
+
+    public TileCache() {
+        this(Long.getLong("imageviewer.tileCacheBytes", defaultByteBudget));
+    }
+
+    public TileCache(long byteBudget) {
+        this.byteBudget = byteBudget;
+    }
+
+    /**
+     * Get a tile and mark it as recently used.
+     *
+     * @param key The key of the tile.
+     * @return Returns null if the tile isn't cached.
+     */
+    public synchronized Image get(Key key) {
+        var tile = entries.get(key);
+        if (tile != null) hitCount++;
+        else missCount++;
+        return tile;
+    }
+
+    /**
+     * Add a decoded tile, evicting the least recently used tiles until it fits the byte budget.
+     *
+     * @param key  The key of the tile.
+     * @param tile The decoded tile.
+     */
+    public synchronized void put(Key key, Image tile) {
+        var size = ImageCache.sizeOf(tile);
+        if (size > byteBudget) return;
+
+        var previous = entries.put(key, tile);
+        if (previous != null) bytesHeld -= ImageCache.sizeOf(previous);
+        bytesHeld += size;
+
+        var iterator = entries.values().iterator();
+        while (bytesHeld > byteBudget && iterator.hasNext()) {
+            bytesHeld -= ImageCache.sizeOf(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Remove all cached tiles.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytesHeld = 0;
+    }
+
+    public synchronized long getBytesHeld() {
+        return bytesHeld;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Get the singleton instance.
+     */
+    public static synchronized TileCache getInstance() {
+        if (instance == null) {
+            var cache = new TileCache();
+            var metrics = Metrics.getInstance();
+            metrics.gauge("tiles.hits", cache::getHitCount);
+            metrics.gauge("tiles.misses", cache::getMissCount);
+            metrics.gauge("tiles.bytes", cache::getBytesHeld);
+            metrics.gauge("tiles.entries", cache::getEntryCount);
+            instance = cache;
+        }
+        return instance;
+    }
+
+    /**
+     * Identifies one tile of one version of a file.
+     */
+    public static final class Key {
+        private final String path;
+        private final long lastModified;
+        private final int level;
+        private final int column;
+        private final int row;
+
+        public Key(String path, long lastModified, int level, int column, int row) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.level = level;
+            this.column = column;
+            this.row = row;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            var other = (Key) o;
+            return lastModified == other.lastModified && level == other.level && column == other.column
+                    && row == other.row && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, lastModified, level, column, row);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package bll;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.Image;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Splits an image into tiles at several resolutions, so a part of an image far too big to decode whole can be shown at
+ * any zoom. Level 0 is the full resolution, each next level halves it, down to the level at which the whole image fits
+ * in one tile. Tiles are decoded on demand with ImageDecoder.decodeRegion() and kept in the TileCache.
+ * <p>
+ * Formats that store their pixels in tiles or strips (TIFF) only read the part of the file a tile needs; formats that
+ * compress the image as one stream (PNG, JPEG) have to read the file up to the tile.
+ */
+public class TilePyramid {
+
+    /**
+     * The width and height of a tile in pixels of its level.
+     */
+    public static final int tileSize = 512;
+
+    private final File file;
+    private final String filePath;
+    private final long lastModified;
+    private final int sourceWidth;
+    private final int sourceHeight;
+    private final int levelCount;
+
+    /**
+     * @param filePath     The normalized file path of the image.
+     * @param lastModified The last modification time of the image file in milliseconds since the epoch.
+     * @param sourceWidth  The width of the image.
+     * @param sourceHeight The height of the image.
+     */
+    public TilePyramid(String filePath, long lastModified, int sourceWidth, int sourceHeight) {
+        this.filePath = filePath;
+        file = new File(filePath);
+        this.lastModified = lastModified;
+        this.sourceWidth = sourceWidth;
+        this.sourceHeight = sourceHeight;
+
+        var levels = 1;
+        while (Math.max(sourceWidth, sourceHeight) > tileSize << (levels - 1)) levels++;
+        levelCount = levels;
+    }
+
+    /**
+     * Get the level that has enough resolution to show the image at a scale.
+     *
+     * @param scale The amount of device pixels per image pixel.
+     * @return Returns the coarsest level that isn't smaller than the scale needs.
+     */
+    public int getLevel(double scale) {
+        var level = (int) Math.floor(Math.log(1 / scale) / Math.log(2));
+        return Math.max(0, Math.min(levelCount - 1, level));
+    }
+
+    /**
+     * Get the resolution of a level.
+     *
+     * @param level The level.
+     * @return Returns the amount of level pixels per image pixel. (1 for level 0, 0.5 for level 1 and so on.)
+     */
+    public static double getLevelScale(int level) {
+        return 1.0 / (1 << level);
+    }
+
+    /**
+     * Get the amount of columns of tiles a level has.
+     *
+     * @param level The level.
+     * @return Returns the amount.
+     */
+    public int getColumnCount(int level) {
+        return (int) Math.ceil((double) sourceWidth / getTileSpan(level));
+    }
+
+    /**
+     * Get the amount of rows of tiles a level has.
+     *
+     * @param level The level.
+     * @return Returns the amount.
+     */
+    public int getRowCount(int level) {
+        return (int) Math.ceil((double) sourceHeight / getTileSpan(level));
+    }
+
+    /**
+     * Get the width and height a tile of a level covers.
+     *
+     * @param level The level.
+     * @return Returns the span in image pixels.
+     */
+    public int getTileSpan(int level) {
+        return tileSize << level;
+    }
+
+    /**
+     * Get the part of the image a tile shows.
+     *
+     * @param level  The level of the tile.
+     * @param column The column of the tile.
+     * @param row    The row of the tile.
+     * @return Returns the rectangle in image pixels. (Tiles at the right and bottom edge are smaller.)
+     */
+    public Rectangle2D getTileRegion(int level, int column, int row) {
+        var span = getTileSpan(level);
+        var x = column * span;
+        var y = row * span;
+        return new Rectangle2D(x, y, Math.min(span, sourceWidth - x), Math.min(span, sourceHeight - y));
+    }
+
+    /**
+     * Get a tile if it is cached.
+     *
+     * @param level  The level of the tile.
+     * @param column The column of the tile.
+     * @param row    The row of the tile.
+     * @return Returns null if the tile isn't decoded yet or was evicted.
+     */
+    public Image getTile(int level, int column, int row) {
+        return TileCache.getInstance().get(new TileCache.Key(filePath, lastModified, level, column, row));
+    }
+
+    /**
+     * Decode a tile in the background, unless it is cached.
+     *
+     * @param level  The level of the tile.
+     * @param column The column of the tile.
+     * @param row    The row of the tile.
+     * @return Returns a future that completes with the tile, or with null if it couldn't be decoded. Cancelling it
+     * before the decode started removes it from the decode queue.
+     */
+    public CompletableFuture<Image> loadTile(int level, int column, int row) {
+        var key = new TileCache.Key(filePath, lastModified, level, column, row);
+        var tile = TileCache.getInstance().get(key);
+        if (tile != null) return CompletableFuture.completedFuture(tile);
+
+        return SlideLoader.getInstance().submit(() -> decodeTile(key, level, column, row), SlideLoader.displayPriority);
+    }
+
+    private Image decodeTile(TileCache.Key key, int level, int column, int row) {
+        var region = getTileRegion(level, column, row);
+        var scale = getLevelScale(level);
+        var tile = ImageDecoder.decodeRegion(file, new Rectangle((int) region.getMinX(), (int) region.getMinY(),
+                        (int) region.getWidth(), (int) region.getHeight()),
+                (int) Math.ceil(region.getWidth() * scale), (int) Math.ceil(region.getHeight() * scale));
+        if (tile == null) {
+            Logger.getInstance().warn("Couldn't decode a tile of %s.", filePath);
+            return null;
+        }
+
+        TileCache.getInstance().put(key, tile);
+        return tile;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public int getSourceWidth() {
+        return sourceWidth;
+    }
+
+    public int getSourceHeight() {
+        return sourceHeight;
+    }
+
+    public int getLevelCount() {
+        return levelCount;
+    }
+}
@@ -0,0 +1,107 @@
+package bll;
+
+import java.util.Map;
+
+/**
+ * The JMX view of the whole image viewer, registered as ImageViewer:type=Viewer.
+ */
+public interface ViewerMXBean {
+
+    int getInstanceCount();
+
+    /**
+     * Get the state of the instance rotation.
+     *
+     * @return Returns STOPPED, IDLE or SHOWING.
+     */
+    String getRotationState();
+
+    /**
+     * Get the id of the slideshow the instance rotation currently shows.
+     *
+     * @return Returns 0 if none is shown.
+     */
+    long getCurrentInstanceId();
+
+    /**
+     * Get the ids of the slideshows taking part in the current turn.
+     *
+     * @return Returns the ids, empty if the rotation is idle or stopped.
+     */
+    long[] getPlayingInstanceIds();
+
+    int getMaxPlayingInstances();
+
+    /**
+     * Set the most slideshows that may play at the same time. Fewer play if the decode threads or the image cache
+     * couldn't keep up with that many.
+     *
+     * @param count The amount, at least 1.
+     */
+    void setMaxPlayingInstances(int count);
+
+    double getInstanceShowTime();
+
+    void setInstanceShowTime(double seconds);
+
+    int getThreadCount();
+
+    int getPeakThreadCount();
+
+    long getCacheBytesHeld();
+
+    long getCacheByteBudget();
+
+    /**
+     * Set the maximum amount of bytes the image cache may hold. Lowering it evicts images right away.
+     *
+     * @param bytes The budget in bytes.
+     */
+    void setCacheByteBudget(long bytes);
+
+    int getCacheEntryCount();
+
+    long getCacheHitCount();
+
+    long getCacheMissCount();
+
+    long getCacheEvictionCount();
+
+    int getDecodeQueueLength();
+
+    /**
+     * Get the counters and gauges of the metrics registry.
+     *
+     * @return Returns the values by name.
+     */
+    Map<String, Long> getMetrics();
+
+    /**
+     * Get the latency histograms of the metrics registry.
+     *
+     * @return Returns the count, mean, p50, p90, p99 and max by name.
+     */
+    Map<String, String> getLatencies();
+
+    String getLogLevel();
+
+    /**
+     * Set the log level.
+     *
+     * @param level DEBUG, INFO, WARN, ERROR or OFF.
+     */
+    void setLogLevel(String level);
+
+    /**
+     * Evict least recently used images from the image cache.
+     *
+     * @param maxBytes The amount of bytes to keep at most.
+     */
+    void trimCache(long maxBytes);
+
+    void clearCache();
+
+    void pauseAll();
+
+    void resumeAll();
+}
@@ -0,0 +1,191 @@
+package gui;
+
+import be.SlideshowInstance;
+import bll.ImageDecoder;
+import bll.LatencyHistogram;
+import bll.Logger;
+import bll.Management;
+import bll.Metrics;
+import bll.NullPresenter;
+import bll.SlideImporter;
+import bll.SlideshowInstanceManager;
+import bll.SlideshowManager;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs slideshows of a folder without a window, to load test the slideshow engine on a machine without a display.
+ * Slides are decoded with ImageIO and handed to a NullPresenter. At the end it reports the decode throughput, the
+ * latency from slides being due until they were decoded, and the peak heap and thread counts.
+ * <p>
+ * Usage: HeadlessMain folder [--recursive] [--instances n] [--duration seconds] [--delay seconds] [--rotate seconds]
+ * [--playing n] [--viewport widthxheight]
+ * <p>
+ * The slideshows all play at the same time, each starting at its own part of the folder. With --rotate they take turns
+ * like the image viewer's windows do, each playing for the given time. --playing lets that many of them play at once
+ * during a turn, as far as the decode threads and image cache keep up.
+ */
+public class HeadlessMain {
+
+    private static final long sampleMillis = 100;
+
+    private Path folder;
+    private boolean recursive;
+    private int instances = 1;
+    private double durationSeconds = 30;
+    private double delaySeconds = 1;
+    private double rotateSeconds;
+    private int playing = SlideshowInstanceManager.getDefaultMaxPlayingInstances();
+    private double viewportWidth = SlideshowManager.defaultViewportWidth;
+    private double viewportHeight = SlideshowManager.defaultViewportHeight;
+
+    public static void main(String[] args) throws Exception {
+        // JavaFX images still bring up its renderer, keep it from looking for a GPU. ImageIO needs no display either.
+        if (System.getProperty("prism.order") == null) System.setProperty("prism.order", "sw");
+        if (System.getProperty("java.awt.headless") == null) System.setProperty("java.awt.headless", "true");
+
+        var headlessMain = new HeadlessMain();
+        try {
+            headlessMain.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: HeadlessMain folder [--recursive] [--instances n] [--duration seconds] [--delay seconds] [--rotate seconds] [--playing n] [--viewport widthxheight]");
+            System.exit(2);
+        }
+        System.exit(headlessMain.run() ? 0 : 1);
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            var arg = args[i];
+            if (!arg.startsWith("--")) {
+                folder = Path.of(arg);
+                continue;
+            }
+            if (arg.equals("--recursive")) {
+                recursive = true;
+                continue;
+            }
+            if (i + 1 >= args.length) throw new IllegalArgumentException(String.format("%s needs a value.", arg));
+
+            var value = args[++i];
+            try {
+                switch (arg) {
+                    case "--instances":
+                        instances = Integer.parseInt(value);
+                        break;
+                    case "--duration":
+                        durationSeconds = Double.parseDouble(value);
+                        break;
+                    case "--delay":
+                        delaySeconds = Double.parseDouble(value);
+                        break;
+                    case "--rotate":
+                        rotateSeconds = Double.parseDouble(value);
+                        break;
+                    case "--playing":
+                        playing = Integer.parseInt(value);
+                        break;
+                    case "--viewport":
+                        var size = value.toLowerCase(Locale.ROOT).split("x");
+                        viewportWidth = Double.parseDouble(size[0]);
+                        viewportHeight = Double.parseDouble(size[1]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException(String.format("Unknown option %s.", arg));
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException(String.format("Invalid value %s for %s.", value, arg));
+            }
+        }
+
+        if (folder == null || !Files.isDirectory(folder))
+            throw new IllegalArgumentException("Please give a folder of images.");
+        if (instances < 1 || playing < 1 || durationSeconds <= 0 || delaySeconds < 0 || viewportWidth <= 0 || viewportHeight <= 0)
+            throw new IllegalArgumentException("The instances, playing, duration, delay and viewport must be positive.");
+    }
+
+    private boolean run() throws InterruptedException {
+        // There is no JavaFX toolkit to decode with.
+        ImageDecoder.setBackend(ImageDecoder.imageIoBackend);
+
+        var importStart = System.nanoTime();
+        var slides = SlideImporter.getInstance().createSlides(folder, recursive);
+        System.out.printf("Imported %d slides from %s in %.1f s.%n", slides.size(), folder, (System.nanoTime() - importStart) / 1e9);
+        if (slides.isEmpty()) {
+            System.err.println("No images found.");
+            return false;
+        }
+
+        var memory = ManagementFactory.getMemoryMXBean();
+        var threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        var decodesBefore = ImageDecoder.getDecodeCount();
+        var failedBefore = ImageDecoder.getFailedDecodeCount();
+        var pixelsBefore = ImageDecoder.getDecodedPixels();
+        var decodeNanosBefore = ImageDecoder.getDecodeNanos();
+
+        // Setting up already shows each slideshow's first slide, so it's timed too.
+        var start = System.nanoTime();
+        var latency = new LatencyHistogram();
+        var presenters = new ArrayList<NullPresenter>();
+        var rotation = new SlideshowInstanceManager();
+        var managers = new ArrayList<SlideshowManager>();
+        for (int i = 0; i < instances; i++) {
+            var presenter = new NullPresenter(latency);
+            var manager = new SlideshowManager(presenter);
+            manager.addSlides(slides);
+            manager.setViewportSize(viewportWidth, viewportHeight);
+            manager.setSlideShowDelay(delaySeconds);
+            // Spread the slideshows over the folder so they don't all decode the same slides.
+            manager.jumpTo((int) ((long) slides.size() * i / instances));
+            presenters.add(presenter);
+            managers.add(manager);
+            rotation.addControllerInstance(new SlideshowInstance(manager));
+        }
+
+        // Watch a long run with JConsole or VisualVM.
+        Management.export(rotation);
+
+        if (rotateSeconds > 0 && instances > 1) {
+            SlideshowInstanceManager.instanceShowTime = rotateSeconds;
+            rotation.setMaxPlayingInstances(playing);
+            rotation.start();
+        } else
+            managers.forEach(SlideshowManager::start);
+
+        var peakHeap = 0L;
+        var end = start + (long) (durationSeconds * TimeUnit.SECONDS.toNanos(1));
+        while (System.nanoTime() < end) {
+            peakHeap = Math.max(peakHeap, memory.getHeapMemoryUsage().getUsed());
+            Thread.sleep(Math.min(sampleMillis, Math.max(1, TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime()))));
+        }
+        var seconds = (System.nanoTime() - start) / 1e9;
+
+        rotation.stop();
+        managers.forEach(SlideshowManager::stop);
+        // Let the log catch up so it doesn't run through the report.
+        Logger.getInstance().flush(1000);
+
+        var decodes = ImageDecoder.getDecodeCount() - decodesBefore;
+        var decodeNanos = ImageDecoder.getDecodeNanos() - decodeNanosBefore;
+        var shown = presenters.stream().mapToLong(NullPresenter::getPresentedCount).sum();
+
+        System.out.printf("Ran %d slideshow(s) of %d slides for %.1f s, %.2f s per slide, %.0fx%.0f viewport%s.%n", instances, slides.size(),
+                seconds, managers.get(0).getSlideShowDelay(), viewportWidth, viewportHeight, rotateSeconds > 0 && instances > 1 ? String.format(", rotating every %.1f s with up to %d playing", rotateSeconds, playing) : "");
+        System.out.printf("Decodes:     %d (%d failed), %.1f per s, %.1f megapixels per s, %.1f ms per decode%n", decodes,
+                ImageDecoder.getFailedDecodeCount() - failedBefore, decodes / seconds, (ImageDecoder.getDecodedPixels() - pixelsBefore) / seconds / 1e6,
+                decodes > 0 ? decodeNanos / 1e6 / decodes : 0.0);
+        System.out.printf("Shown:       %d slides, %.1f per s%n", shown, shown / seconds);
+        System.out.printf("Transitions: %s p99.9=%.2fms%n", latency, latency.getPercentile(99.9) / 1e6);
+        System.out.printf("Peak heap:   %.0f MB of %.0f MB%n", peakHeap / 1e6, memory.getHeapMemoryUsage().getMax() / 1e6);
+        System.out.printf("Threads:     %d peak, %d live%n", threads.getPeakThreadCount(), threads.getThreadCount());
+        System.out.printf("%nMetrics:%n%s", Metrics.getInstance());
+        return true;
+    }
+}
@@ -1,6 +1,11 @@
 package gui;
 
+import bll.Logger;
+import bll.Management;
+import bll.SessionStore;
 import bll.SlideshowInstanceManager;
+import bll.StartupTimer;
+import gui.controller.ImageViewerWindowController;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -9,6 +14,7 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.util.List;
 
 public class Main extends Application {
 
@@ -17,32 +23,94 @@ public class Main extends Application {
     private final static String mainTitle = "Image Viewer";
 
     private Stage primaryStage;
+    private boolean sessionSaved;
 
     @Override
     public void start(Stage primaryStage) throws Exception {
+        StartupTimer.getInstance().mark(StartupTimer.Phase.FX_INIT);
         instance = this;
         slideshowInstanceWatcher();
 
+        var sessionStore = SessionStore.getInstance();
+        List<SessionStore.SavedInstance> savedInstances = sessionStore.isEnabled() ? sessionStore.load() : List.of();
+
         // Start a new instance of the image viewer.
-        startInstance(primaryStage);
+        showInstance(primaryStage, savedInstances.isEmpty() ? null : savedInstances.get(0));
+        // Closing the main window ends the session, save it while all windows are still open.
+        primaryStage.setOnCloseRequest(e -> saveSession());
+
+        // The other windows wait until the first one shows its slide.
+        if (savedInstances.size() > 1) {
+            StartupTimer.getInstance().runAfterFirstPaint(() -> {
+                for (var savedInstance : savedInstances.subList(1, savedInstances.size())) {
+                    try {
+                        startNewInstance(savedInstance);
+                    } catch (IOException e) {
+                        Logger.getInstance().warn("Couldn't restore a window: %s", e);
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    public void stop() {
+        saveSession();
+    }
+
+    private void saveSession() {
+        var sessionStore = SessionStore.getInstance();
+        if (sessionSaved || !sessionStore.isEnabled()) return;
+
+        sessionSaved = true;
+        sessionStore.save(slideshowInstanceManager.getSlideshowInstances());
     }
 
     private void slideshowInstanceWatcher() {
         slideshowInstanceManager.start();
+        Management.export(slideshowInstanceManager);
     }
 
     public Object startInstance(Stage primaryStage) throws IOException {
+        return showInstance(primaryStage, null);
+    }
+
+    private ImageViewerWindowController showInstance(Stage stage, SessionStore.SavedInstance savedInstance) throws IOException {
         FXMLLoader loader = new FXMLLoader(getClass().getResource("fxml/ImageViewerWindow.fxml"));
         Parent root = loader.load();
+        StartupTimer.getInstance().mark(StartupTimer.Phase.FXML_LOADED);
 
-        primaryStage.setTitle(mainTitle);
-        primaryStage.setScene(new Scene(root));
-        primaryStage.show();
-        slideshowInstanceManager.addControllerInstance(loader.getController(), primaryStage);
-        return loader.getController();
+        stage.setTitle(mainTitle);
+        stage.setScene(new Scene(root));
+        if (savedInstance != null) applyBounds(stage, savedInstance);
+        stage.show();
+
+        ImageViewerWindowController controller = loader.getController();
+        slideshowInstanceManager.addControllerInstance(new WindowSlideshowInstance(controller, stage));
+        if (savedInstance != null) {
+            controller.restoreSession(savedInstance);
+            StartupTimer.getInstance().mark(StartupTimer.Phase.SESSION_RESTORED);
+        }
+        return controller;
+    }
+
+    private static void applyBounds(Stage stage, SessionStore.SavedInstance savedInstance) {
+        if (!Double.isNaN(savedInstance.getX()) && !Double.isNaN(savedInstance.getY())) {
+            stage.setX(savedInstance.getX());
+            stage.setY(savedInstance.getY());
+        }
+        if (savedInstance.getWidth() > 0 && savedInstance.getHeight() > 0) {
+            stage.setWidth(savedInstance.getWidth());
+            stage.setHeight(savedInstance.getHeight());
+        }
+        stage.setMaximized(savedInstance.isMaximized());
     }
 
     public Object startNewInstance() throws IOException {
+        return startNewInstance(null);
+    }
+
+    private Object startNewInstance(SessionStore.SavedInstance savedInstance) throws IOException {
         FXMLLoader loader = new FXMLLoader(getClass().getResource("fxml/ImageViewerWindow.fxml"));
         Parent root = loader.load();
 
@@ -50,17 +118,20 @@ public class Main extends Application {
         stage.setTitle(mainTitle);
         stage.setScene(new Scene(root));
         stage.initModality(Modality.WINDOW_MODAL);
+        if (savedInstance != null) applyBounds(stage, savedInstance);
         stage.show();
 
-        var slideshowInstance = slideshowInstanceManager.addControllerInstance(loader.getController(), stage);
+        ImageViewerWindowController controller = loader.getController();
+        var slideshowInstance = new WindowSlideshowInstance(controller, stage);
+        slideshowInstanceManager.addControllerInstance(slideshowInstance);
+        if (savedInstance != null) controller.restoreSession(savedInstance);
 
         stage.setOnHiding(e -> {
             // Remove the instance on close event.
-            if (slideshowInstance != null)
-                slideshowInstanceManager.removeControllerInstance(slideshowInstance.getId());
+            slideshowInstanceManager.removeControllerInstance(slideshowInstance.getId());
         });
         //setPrimaryStage(stage);
-        return loader.getController();
+        return controller;
     }
 
     private void setPrimaryStage(Stage stage) {
@@ -73,6 +144,7 @@ public class Main extends Application {
     }
 
     public static void main(String[] args) {
+        StartupTimer.getInstance().mark(StartupTimer.Phase.MAIN);
         launch(args);
     }
 
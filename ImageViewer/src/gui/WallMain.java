@@ -0,0 +1,158 @@
+package gui;
+
+import be.Slide;
+import be.SlideshowInstance;
+import bll.FolderWatcher;
+import bll.Logger;
+import bll.Management;
+import bll.SlideImporter;
+import bll.SlideshowInstanceManager;
+import bll.SlideshowManager;
+import bll.SlideshowScheduler;
+import gui.control.SlideshowWall;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.input.KeyCode;
+import javafx.stage.Stage;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shows the images of a folder on a video wall: a grid of slideshows in one window, each starting at its own part of
+ * the folder. The slideshows are the same as the image viewer's, without a window and controller each. Space pauses and
+ * resumes the wall, F11 switches to full screen and back.
+ * <p>
+ * Usage: WallMain folder [--recursive] [--grid columnsxrows] [--delay seconds]
+ */
+public class WallMain extends Application {
+
+    private static final String usage = "Usage: WallMain folder [--recursive] [--grid columnsxrows] [--delay seconds]";
+
+    private Path folder;
+    private boolean recursive;
+    private int columns = 4;
+    private int rows = 4;
+    private double delaySeconds = 5;
+    private final SlideshowInstanceManager wallInstances = new SlideshowInstanceManager();
+    private SlideshowWall wall;
+    private boolean paused;
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+
+    @Override
+    public void start(Stage stage) {
+        try {
+            parseArguments(getParameters().getRaw());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(usage);
+            Platform.exit();
+            return;
+        }
+
+        wall = new SlideshowWall(columns, rows);
+        wall.setStyle("-fx-background-color: black;");
+        var scene = new Scene(wall, 1280, 720);
+        scene.setOnKeyPressed(event -> {
+            if (event.getCode() == KeyCode.SPACE) togglePause();
+            else if (event.getCode() == KeyCode.F11) stage.setFullScreen(!stage.isFullScreen());
+        });
+        stage.setTitle(String.format("%s - %dx%d wall of %s", Main.getMainTitle(), columns, rows, folder.toAbsolutePath().getFileName()));
+        stage.setScene(scene);
+        stage.show();
+
+        // The tiles don't take turns, the instance manager is only their registry for JMX.
+        for (var tile : wall.getTiles())
+            wallInstances.addControllerInstance(new SlideshowInstance(tile.getSlideshowManager()));
+        Management.export(wallInstances);
+
+        // Read the folder off the FX thread, the wall stays black until it's read.
+        CompletableFuture.supplyAsync(() -> SlideImporter.getInstance().createSlides(folder, recursive))
+                .thenAccept(slides -> Platform.runLater(() -> play(slides)));
+    }
+
+    private void parseArguments(List<String> args) {
+        for (int i = 0; i < args.size(); i++) {
+            var arg = args.get(i);
+            if (!arg.startsWith("--")) {
+                folder = Path.of(arg);
+                continue;
+            }
+            if (arg.equals("--recursive")) {
+                recursive = true;
+                continue;
+            }
+            if (i + 1 >= args.size()) throw new IllegalArgumentException(String.format("%s needs a value.", arg));
+
+            var value = args.get(++i);
+            try {
+                switch (arg) {
+                    case "--grid":
+                        var size = value.toLowerCase(Locale.ROOT).split("x");
+                        columns = Integer.parseInt(size[0]);
+                        rows = Integer.parseInt(size[1]);
+                        break;
+                    case "--delay":
+                        delaySeconds = Double.parseDouble(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException(String.format("Unknown option %s.", arg));
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException(String.format("Invalid value %s for %s.", value, arg));
+            }
+        }
+
+        if (folder == null || !Files.isDirectory(folder))
+            throw new IllegalArgumentException("Please give a folder of images.");
+        if (columns < 1 || rows < 1 || delaySeconds <= 0)
+            throw new IllegalArgumentException("The grid and delay must be positive.");
+    }
+
+    private void play(List<Slide> slides) {
+        if (slides.isEmpty()) {
+            Logger.getInstance().warn("No images found in %s.", folder);
+            return;
+        }
+
+        var tiles = wall.getTiles();
+        var delayNanos = (long) (delaySeconds * TimeUnit.SECONDS.toNanos(1));
+        for (int i = 0; i < tiles.size(); i++) {
+            var manager = tiles.get(i).getSlideshowManager();
+            manager.addSlides(slides);
+            manager.setSlideShowDelay(delaySeconds);
+            // The back buffer already decodes the next slide, and a wall is never stepped back through.
+            manager.getPrefetcher().setAheadCount(1);
+            manager.getPrefetcher().setBehindCount(0);
+            // Spread the tiles over the folder so they don't all show the same slides.
+            manager.jumpTo((int) ((long) slides.size() * i / tiles.size()));
+            FolderWatcher.getInstance().watch(manager);
+            // Spread their advances over the delay too, so their decodes don't all queue up at once.
+            SlideshowScheduler.getInstance().schedule(() -> Platform.runLater(() -> startTile(manager)), delayNanos * i / tiles.size(), TimeUnit.NANOSECONDS);
+        }
+        Logger.getInstance().info("Playing %d slides on %d tiles.", slides.size(), tiles.size());
+    }
+
+    private void startTile(SlideshowManager manager) {
+        manager.start();
+        // The wall may have been paused before this tile's turn to start came.
+        if (paused) manager.pause();
+    }
+
+    private void togglePause() {
+        paused = !paused;
+        for (var tile : wall.getTiles()) {
+            var manager = tile.getSlideshowManager();
+            if (paused) manager.pause();
+            else manager.unpause();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package gui;
+
+import be.SlideshowInstance;
+import gui.controller.ImageViewerWindowController;
+import javafx.geometry.Rectangle2D;
+import javafx.stage.Stage;
+
+/**
+ * A slideshow instance shown in an image viewer window.
+ */
+public class WindowSlideshowInstance extends SlideshowInstance {
+    private ImageViewerWindowController controller;
+    private Stage stage;
+
+    public WindowSlideshowInstance(ImageViewerWindowController controller, Stage stage) {
+        setController(controller);
+        setStage(stage);
+    }
+
+    /**
+     * Get the slideshow instance's controller.
+     *
+     * @return Returns the image viewer controller.
+     */
+    public ImageViewerWindowController getController() {
+        return controller;
+    }
+
+    /**
+     * Set the slideshow instance's controller. Its slideshow manager becomes the instance's.
+     *
+     * @param controller The controller to use.
+     */
+    public void setController(ImageViewerWindowController controller) {
+        this.controller = controller;
+        this.controller.setSlideshowInstance(this);
+        setSlideshowManager(controller.getSlideShowManager());
+    }
+
+    /**
+     * Get the slideshow instance's stage.
+     *
+     * @return Returns the stage.
+     */
+    public Stage getStage() {
+        return stage;
+    }
+
+    /**
+     * Set the slideshow instance's stage.
+     *
+     * @param stage The stage to use.
+     */
+    public void setStage(Stage stage) {
+        this.stage = stage;
+    }
+
+    @Override
+    public Rectangle2D getWindowBounds() {
+        return stage != null ? new Rectangle2D(stage.getX(), stage.getY(), stage.getWidth(), stage.getHeight()) : null;
+    }
+
+    @Override
+    public boolean isMaximized() {
+        return stage != null && stage.isMaximized();
+    }
+}
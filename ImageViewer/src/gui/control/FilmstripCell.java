@@ -0,0 +1,80 @@
+package gui.control;
+
+import be.Playlist;
+import bll.ThumbnailStore;
+import javafx.application.Platform;
+import javafx.scene.control.ContentDisplay;
+import javafx.scene.control.ListCell;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Shows the thumbnail of one slide in the filmstrip. The thumbnail is read from the thumbnail store, or made in the
+ * background; a cell that scrolls to another slide first cancels the thumbnail it was waiting for. The slide's file
+ * information is read straight from the playlist, so no slide handles are created while scrolling.
+ */
+public class FilmstripCell extends ListCell<Integer> {
+
+    /**
+     * The size the thumbnails are shown at, in pixels.
+     */
+    public static final double thumbnailWidth = 120;
+    public static final double thumbnailHeight = 90;
+
+    private final Playlist playlist;
+    private final ImageView imageView = new ImageView();
+    private CompletableFuture<Image> pendingThumbnail;
+
+    public FilmstripCell(Playlist playlist) {
+        this.playlist = playlist;
+        imageView.setFitWidth(thumbnailWidth);
+        imageView.setFitHeight(thumbnailHeight);
+        imageView.setPreserveRatio(true);
+        setGraphic(imageView);
+        setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+    }
+
+    @Override
+    protected void updateItem(Integer index, boolean empty) {
+        super.updateItem(index, empty);
+        cancelThumbnail();
+        imageView.setImage(null);
+        if (empty || index == null) return;
+
+        String filePath;
+        long fileSize;
+        long lastModified;
+        try {
+            filePath = playlist.getFilePath(index);
+            fileSize = playlist.getFileSize(index);
+            lastModified = playlist.getLastModified(index);
+        } catch (IndexOutOfBoundsException e) {
+            // The slide was removed and the list view hasn't caught up yet.
+            return;
+        }
+
+        var thumbnail = ThumbnailStore.getInstance().loadThumbnail(filePath, fileSize, lastModified);
+        if (thumbnail.isDone()) {
+            if (!thumbnail.isCompletedExceptionally()) imageView.setImage(thumbnail.join());
+            return;
+        }
+
+        pendingThumbnail = thumbnail;
+        thumbnail.thenAccept(image -> Platform.runLater(() -> {
+            // Only if the cell still shows this slide.
+            if (pendingThumbnail == thumbnail) {
+                pendingThumbnail = null;
+                imageView.setImage(image);
+            }
+        }));
+    }
+
+    private void cancelThumbnail() {
+        if (pendingThumbnail != null) {
+            pendingThumbnail.cancel(false);
+            pendingThumbnail = null;
+        }
+    }
+}
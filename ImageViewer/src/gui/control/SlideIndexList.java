@@ -0,0 +1,46 @@
+package gui.control;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Objects;
+
+/**
+ * An observable list of the numbers 0 to size - 1 without storing them, so a list view can show a playlist of any
+ * length by slide index.
+ */
+public class SlideIndexList extends ObservableListBase<Integer> {
+
+    private int size;
+
+    @Override
+    public Integer get(int index) {
+        Objects.checkIndex(index, size);
+        return index;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Set the amount of indices, adding or removing them at the end.
+     *
+     * @param size The new amount of indices.
+     */
+    public void setSize(int size) {
+        if (size == this.size) return;
+
+        var oldSize = this.size;
+        this.size = size;
+        beginChange();
+        if (size > oldSize) nextAdd(oldSize, size);
+        else {
+            var removed = new ArrayList<Integer>(oldSize - size);
+            for (int i = size; i < oldSize; i++) removed.add(i);
+            nextRemove(size, removed);
+        }
+        endChange();
+    }
+}
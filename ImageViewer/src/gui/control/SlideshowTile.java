@@ -0,0 +1,56 @@
+package gui.control;
+
+import bll.ImageViewPresenter;
+import bll.SlideshowManager;
+import javafx.geometry.HPos;
+import javafx.geometry.VPos;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.Region;
+
+/**
+ * One slideshow of a SlideshowWall: an image view and the slideshow that fills it. The slideshow decodes its slides at
+ * the size of the tile, so the slides of a wall of small tiles are decoded small.
+ */
+public class SlideshowTile extends Region {
+
+    private final ImageView imageView = new ImageView();
+    private final SlideshowManager slideshowManager;
+
+    public SlideshowTile() {
+        imageView.setPreserveRatio(true);
+        imageView.setSmooth(true);
+        getChildren().add(imageView);
+        slideshowManager = new SlideshowManager(new ImageViewPresenter(imageView));
+    }
+
+    @Override
+    protected void layoutChildren() {
+        var width = getWidth();
+        var height = getHeight();
+        imageView.setFitWidth(width);
+        imageView.setFitHeight(height);
+        layoutInArea(imageView, 0, 0, width, height, 0, HPos.CENTER, VPos.CENTER);
+
+        // Only re-decodes the current slide if the tile grew beyond what it was decoded at.
+        var scale = getScene() != null && getScene().getWindow() != null ? getScene().getWindow().getOutputScaleX() : 1;
+        slideshowManager.setViewportSize(width * scale, height * scale);
+    }
+
+    /**
+     * Get the slideshow shown in the tile.
+     *
+     * @return Returns the slideshow manager.
+     */
+    public SlideshowManager getSlideshowManager() {
+        return slideshowManager;
+    }
+
+    /**
+     * Get the image view the slides are shown in.
+     *
+     * @return Returns the image view.
+     */
+    public ImageView getImageView() {
+        return imageView;
+    }
+}
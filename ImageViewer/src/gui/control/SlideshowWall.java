@@ -0,0 +1,67 @@
+package gui.control;
+
+import javafx.scene.layout.Region;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A video wall: a grid of SlideshowTiles in one scene. All tiles share the image viewer's decode threads, image cache
+ * and slideshow scheduler, so a wall of many slideshows costs a few threads rather than a window and a thread each.
+ */
+public class SlideshowWall extends Region {
+
+    /**
+     * The space between the tiles in pixels.
+     */
+    public static final double tileGap = 2;
+
+    private final int columns;
+    private final int rows;
+    private final List<SlideshowTile> tiles = new ArrayList<>();
+
+    /**
+     * @param columns The amount of tiles next to each other.
+     * @param rows    The amount of tiles above each other.
+     */
+    public SlideshowWall(int columns, int rows) {
+        if (columns < 1 || rows < 1) throw new IllegalArgumentException("A wall needs at least one column and row.");
+        this.columns = columns;
+        this.rows = rows;
+
+        for (int i = 0; i < columns * rows; i++) {
+            var tile = new SlideshowTile();
+            tiles.add(tile);
+            getChildren().add(tile);
+        }
+    }
+
+    @Override
+    protected void layoutChildren() {
+        var tileWidth = (getWidth() - tileGap * (columns - 1)) / columns;
+        var tileHeight = (getHeight() - tileGap * (rows - 1)) / rows;
+        for (int i = 0; i < tiles.size(); i++) {
+            var x = snapPositionX(i % columns * (tileWidth + tileGap));
+            var y = snapPositionY(i / columns * (tileHeight + tileGap));
+            tiles.get(i).resizeRelocate(x, y, snapSizeX(tileWidth), snapSizeY(tileHeight));
+        }
+    }
+
+    /**
+     * Get the tiles, row by row.
+     *
+     * @return Returns an unmodifiable view of the tiles.
+     */
+    public List<SlideshowTile> getTiles() {
+        return Collections.unmodifiableList(tiles);
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+}
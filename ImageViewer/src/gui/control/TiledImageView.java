@@ -0,0 +1,297 @@
+package gui.control;
+
+import bll.TilePyramid;
+import javafx.application.Platform;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.scene.Node;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.Region;
+import javafx.scene.shape.Rectangle;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Shows a slide zoomed in: the mouse wheel zooms around the pointer, dragging pans and a double click goes back to
+ * fitting the whole slide. Only the tiles of the slide's TilePyramid that are in view are decoded, at the level the zoom
+ * needs; until they are, the preview (the slide's fitted image) is shown scaled up in their place. Tiles that scroll out
+ * of view before they're decoded are cancelled.
+ * <p>
+ * At the fit zoom the view shows nothing, so the image view underneath it shows the slide as usual.
+ */
+public class TiledImageView extends Region {
+
+    /**
+     * The amount the zoom changes by per mouse wheel step.
+     */
+    public static final double zoomStep = 1.25;
+
+    /**
+     * The most device pixels an image pixel is zoomed to.
+     */
+    public static final double maxPixelZoom = 4;
+
+    private final ObjectProperty<Image> preview = new SimpleObjectProperty<>(this, "preview");
+    private final ReadOnlyBooleanWrapper zoomed = new ReadOnlyBooleanWrapper(this, "zoomed");
+    private final ImageView previewView = new ImageView();
+    private final List<ImageView> tileViews = new ArrayList<>();
+    private final Map<Long, CompletableFuture<Image>> pendingTiles = new HashMap<>();
+    private final Set<Long> failedTiles = new HashSet<>();
+    private TilePyramid pyramid;
+    private double zoom = 1;
+    private double centerX;
+    private double centerY;
+    private double dragX;
+    private double dragY;
+
+    public TiledImageView() {
+        previewView.setSmooth(true);
+        preview.addListener((obs, oldVal, newVal) -> requestLayout());
+
+        var clip = new Rectangle();
+        clip.widthProperty().bind(widthProperty());
+        clip.heightProperty().bind(heightProperty());
+        setClip(clip);
+
+        setOnScroll(event -> {
+            if (pyramid == null || event.getDeltaY() == 0) return;
+            zoomAt(event.getDeltaY() > 0 ? zoomStep : 1 / zoomStep, event.getX(), event.getY());
+            event.consume();
+        });
+        setOnMousePressed(event -> {
+            dragX = event.getX();
+            dragY = event.getY();
+        });
+        setOnMouseDragged(event -> {
+            if (!isZoomed()) return;
+            pan(event.getX() - dragX, event.getY() - dragY);
+            dragX = event.getX();
+            dragY = event.getY();
+        });
+        setOnMouseClicked(event -> {
+            if (event.getButton() == MouseButton.PRIMARY && event.getClickCount() == 2) resetZoom();
+        });
+    }
+
+    /**
+     * Set the image to zoom into. The zoom goes back to fitting the whole image.
+     *
+     * @param pyramid The tiles of the image, null to not allow zooming.
+     */
+    public void setPyramid(TilePyramid pyramid) {
+        this.pyramid = pyramid;
+        cancelTilesExcept(Set.of());
+        failedTiles.clear();
+        resetZoom();
+    }
+
+    public TilePyramid getPyramid() {
+        return pyramid;
+    }
+
+    /**
+     * The image shown while the tiles in view are decoded, normally the slide as decoded to fit the window.
+     *
+     * @return Returns the property.
+     */
+    public ObjectProperty<Image> previewProperty() {
+        return preview;
+    }
+
+    /**
+     * Is the view zoomed in beyond fitting the whole image?
+     *
+     * @return Returns the property.
+     */
+    public ReadOnlyBooleanProperty zoomedProperty() {
+        return zoomed.getReadOnlyProperty();
+    }
+
+    public boolean isZoomed() {
+        return zoomed.get();
+    }
+
+    /**
+     * Zoom in or out, keeping the image point under a view point where it is.
+     *
+     * @param factor The factor to multiply the zoom by.
+     * @param x      The x of the view point.
+     * @param y      The y of the view point.
+     */
+    public void zoomAt(double factor, double x, double y) {
+        if (pyramid == null || getWidth() <= 0 || getHeight() <= 0) return;
+
+        var scale = getScale();
+        var imageX = centerX + (x - getWidth() / 2) / scale;
+        var imageY = centerY + (y - getHeight() / 2) / scale;
+
+        var maxZoom = Math.max(1, maxPixelZoom / (getFitScale() * getOutputScale()));
+        zoom = Math.max(1, Math.min(maxZoom, zoom * factor));
+        scale = getScale();
+        centerX = imageX - (x - getWidth() / 2) / scale;
+        centerY = imageY - (y - getHeight() / 2) / scale;
+        zoomed.set(zoom > 1);
+        requestLayout();
+    }
+
+    /**
+     * Move the image.
+     *
+     * @param deltaX The distance to move it right by, in view pixels.
+     * @param deltaY The distance to move it down by, in view pixels.
+     */
+    public void pan(double deltaX, double deltaY) {
+        var scale = getScale();
+        centerX -= deltaX / scale;
+        centerY -= deltaY / scale;
+        requestLayout();
+    }
+
+    /**
+     * Go back to fitting the whole image.
+     */
+    public void resetZoom() {
+        zoom = 1;
+        if (pyramid != null) {
+            centerX = pyramid.getSourceWidth() / 2.0;
+            centerY = pyramid.getSourceHeight() / 2.0;
+        }
+        zoomed.set(false);
+        requestLayout();
+    }
+
+    private double getFitScale() {
+        return Math.min(getWidth() / pyramid.getSourceWidth(), getHeight() / pyramid.getSourceHeight());
+    }
+
+    private double getScale() {
+        return getFitScale() * zoom;
+    }
+
+    private double getOutputScale() {
+        var scene = getScene();
+        return scene != null && scene.getWindow() != null ? scene.getWindow().getOutputScaleX() : 1;
+    }
+
+    @Override
+    protected void layoutChildren() {
+        if (pyramid == null || !isZoomed()) {
+            getChildren().clear();
+            cancelTilesExcept(Set.of());
+            return;
+        }
+
+        var width = getWidth();
+        var height = getHeight();
+        var sourceWidth = pyramid.getSourceWidth();
+        var sourceHeight = pyramid.getSourceHeight();
+        var scale = getScale();
+
+        // Keep the image filling the view where it is big enough, centered where it isn't.
+        centerX = clampCenter(centerX, sourceWidth, width / scale);
+        centerY = clampCenter(centerY, sourceHeight, height / scale);
+        var left = width / 2 - centerX * scale;
+        var top = height / 2 - centerY * scale;
+
+        var children = new ArrayList<Node>();
+        previewView.setImage(preview.get());
+        previewView.setX(left);
+        previewView.setY(top);
+        previewView.setFitWidth(sourceWidth * scale);
+        previewView.setFitHeight(sourceHeight * scale);
+        children.add(previewView);
+
+        var visibleTiles = new HashSet<Long>();
+        var deviceScale = scale * getOutputScale();
+        var previewImage = preview.get();
+        // Tiles are only needed where the preview has less detail than the zoom shows.
+        if (previewImage == null || previewImage.getWidth() < sourceWidth * deviceScale) {
+            var level = pyramid.getLevel(deviceScale);
+            var span = pyramid.getTileSpan(level);
+            var firstColumn = (int) Math.max(0, Math.floor(-left / scale / span));
+            var lastColumn = (int) Math.min(pyramid.getColumnCount(level) - 1, Math.floor((width - left) / scale / span));
+            var firstRow = (int) Math.max(0, Math.floor(-top / scale / span));
+            var lastRow = (int) Math.min(pyramid.getRowCount(level) - 1, Math.floor((height - top) / scale / span));
+
+            var tileIndex = 0;
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    var key = getTileKey(level, column, row);
+                    visibleTiles.add(key);
+                    var tile = getTile(key, level, column, row);
+                    if (tile == null) continue;
+
+                    var region = pyramid.getTileRegion(level, column, row);
+                    // Round both edges rather than the size, so neighbouring tiles don't leave a seam.
+                    var x = Math.round(left + region.getMinX() * scale);
+                    var y = Math.round(top + region.getMinY() * scale);
+                    var tileView = getTileView(tileIndex++);
+                    tileView.setImage(tile);
+                    tileView.setX(x);
+                    tileView.setY(y);
+                    tileView.setFitWidth(Math.round(left + region.getMaxX() * scale) - x);
+                    tileView.setFitHeight(Math.round(top + region.getMaxY() * scale) - y);
+                    children.add(tileView);
+                }
+            }
+        }
+        cancelTilesExcept(visibleTiles);
+        getChildren().setAll(children);
+    }
+
+    private static double clampCenter(double center, double sourceSize, double viewSize) {
+        if (sourceSize <= viewSize) return sourceSize / 2;
+        return Math.max(viewSize / 2, Math.min(sourceSize - viewSize / 2, center));
+    }
+
+    private Image getTile(long key, int level, int column, int row) {
+        if (failedTiles.contains(key) || pendingTiles.containsKey(key)) return null;
+
+        var load = pyramid.loadTile(level, column, row);
+        if (!load.isDone()) {
+            pendingTiles.put(key, load);
+            load.thenAccept(tile -> Platform.runLater(() -> {
+                if (!pendingTiles.remove(key, load)) return;
+                // Don't try a tile that couldn't be decoded again every time the view moves.
+                if (tile == null) failedTiles.add(key);
+                requestLayout();
+            }));
+            return null;
+        }
+        return !load.isCompletedExceptionally() ? load.join() : null;
+    }
+
+    private void cancelTilesExcept(Set<Long> visibleTiles) {
+        var iterator = pendingTiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            if (!visibleTiles.contains(entry.getKey())) {
+                entry.getValue().cancel(false);
+                iterator.remove();
+            }
+        }
+    }
+
+    private ImageView getTileView(int index) {
+        while (tileViews.size() <= index) {
+            var tileView = new ImageView();
+            tileView.setSmooth(true);
+            tileViews.add(tileView);
+        }
+        return tileViews.get(index);
+    }
+
+    private static long getTileKey(int level, int column, int row) {
+        return (long) level << 56 | (long) column << 28 | row;
+    }
+}
@@ -1,39 +1,65 @@
 package gui.controller;
 
 import be.Slide;
-import be.SlideshowInstance;
+import bll.ImageDecoder;
+import bll.ImageViewPresenter;
 import bll.Logger;
+import bll.PlaylistFile;
+import bll.SessionStore;
+import bll.SlideImportTask;
+import bll.SlideImporter;
+import bll.SlideshowListener;
 import bll.SlideshowManager;
+import bll.StartupTimer;
+import bll.TilePyramid;
 import gui.Main;
+import gui.WindowSlideshowInstance;
+import gui.control.FilmstripCell;
+import gui.control.SlideIndexList;
+import gui.control.TiledImageView;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.Parent;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.Slider;
 import javafx.scene.control.TextArea;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.BorderPane;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.stream.Collectors;
 
 public class ImageViewerWindowController implements Initializable {
     private SlideshowManager slideShowManager;
     private Main main = Main.getInstance();
-    private SlideshowInstance slideshowInstance;
+    private WindowSlideshowInstance slideshowInstance;
+    private SlideImportTask importTask;
+    private final SlideIndexList filmstripItems = new SlideIndexList();
 
     @FXML
     Parent root;
 
+    @FXML
+    private BorderPane imageContainer;
     @FXML
     private ImageView imageView;
     @FXML
+    private TiledImageView tiledImageView;
+    @FXML
     private TextArea slideshowDelayTimeTxtBox;
     @FXML
     private Slider slideshowDelayTimeSlider;
@@ -41,19 +67,85 @@ public class ImageViewerWindowController implements Initializable {
     private Button btnNewSlideshowInstance;
     @FXML
     private Button btnStartSlideshow;
+    @FXML
+    private Button btnLoad;
+    @FXML
+    private Button btnLoadFolder;
+    @FXML
+    private Button btnOpenPlaylist;
+    @FXML
+    private Button btnSavePlaylist;
+    @FXML
+    private CheckBox recursiveCheckBox;
+    @FXML
+    private CheckBox restoreSessionCheckBox;
+    @FXML
+    private ProgressBar importProgressBar;
+    @FXML
+    private ListView<Integer> filmstrip;
 
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
-        slideShowManager = new SlideshowManager(imageView);
+        slideShowManager = new SlideshowManager(new ImageViewPresenter(imageView));
+        initializeFilmstrip();
         registerEvents();
         initializeValues();
     }
 
     private void initializeValues() {
         slideshowDelayTimeTxtBox.setText(String.format("%.2f", slideshowDelayTimeSlider.getValue()));
+        restoreSessionCheckBox.setSelected(SessionStore.getInstance().isEnabled());
+        restoreSessionCheckBox.selectedProperty().addListener((obs, oldVal, newVal) -> SessionStore.getInstance().setEnabled(newVal));
+    }
+
+    private void initializeFilmstrip() {
+        // The filmstrip lists slide indices, cells are only made for the visible ones and read the playlist themselves.
+        var playlist = slideShowManager.getSlides();
+        filmstrip.setItems(filmstripItems);
+        filmstrip.setCellFactory(listView -> new FilmstripCell(playlist));
+
+        // Clicking or arrowing to a slide shows it.
+        filmstrip.getSelectionModel().selectedIndexProperty().addListener((obs, oldVal, newVal) -> {
+            var index = newVal.intValue();
+            if (index >= 0 && index != slideShowManager.getCurrentSlideIndex())
+                displaySlide(slideShowManager.jumpTo(index));
+        });
+    }
+
+    /**
+     * Update the filmstrip after slides were added or removed.
+     */
+    private void updateFilmstrip() {
+        var size = slideShowManager.getSlides().size();
+        var removed = size < filmstripItems.size();
+        filmstripItems.setSize(size);
+        // The indices of the remaining slides may have shifted, so the cells have to look at the playlist again.
+        if (removed) filmstrip.refresh();
+    }
+
+    /**
+     * Select the current slide in the filmstrip and scroll it into view.
+     */
+    private void followCurrentSlide() {
+        var index = slideShowManager.getCurrentSlideIndex();
+        if (index >= filmstripItems.size()) return;
+
+        filmstrip.getSelectionModel().select(index);
+        filmstrip.scrollTo(Math.max(0, index - 2));
     }
 
     private void registerEvents() {
+        // Let the image view follow the window size and decode slides at the size they're shown at.
+        imageView.fitWidthProperty().bind(imageContainer.widthProperty());
+        imageView.fitHeightProperty().bind(imageContainer.heightProperty());
+        imageContainer.widthProperty().addListener((obs, oldVal, newVal) -> updateViewportSize());
+        imageContainer.heightProperty().addListener((obs, oldVal, newVal) -> updateViewportSize());
+
+        // Zooming in shows the slide's tiles over the image view, with the fitted image as a stand-in until they load.
+        tiledImageView.previewProperty().bind(imageView.imageProperty());
+        imageView.visibleProperty().bind(tiledImageView.zoomedProperty().not());
+        imageView.imageProperty().addListener((obs, oldVal, newVal) -> updateTilePyramid());
+
         // Register slider value and listen for the change event.
         slideshowDelayTimeSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
             slideshowDelayTimeTxtBox.setText(String.format("%.2f", newVal));
@@ -66,30 +158,38 @@ public class ImageViewerWindowController implements Initializable {
             slideshowDelayTimeSlider.setValue(sliderVal);
         });
 
-        // Register slideshow change event.
-        slideShowManager.valueProperty().addListener((obs, oldMessage, newMessage) -> {
-
-            // Handle slide change.
-            if (newMessage.getClass().equals(Slide.class))
-                slideshowInstance.getStage().setTitle(String.format("%s - %s", Main.getMainTitle(), ((Slide) newMessage).getFileName()));
-        });
-
-        // Register message change event.
-        slideShowManager.messageProperty().addListener((obs, oldMessage, newMessage) -> {
+        // The slideshow reports from its scheduler thread, handle its changes on the FX thread.
+        slideShowManager.addListener(new SlideshowListener() {
+            @Override
+            public void slideChanged(Slide slide) {
+                Platform.runLater(() -> displaySlide(slide));
+            }
 
-            // Handle slide change.
-            switch (newMessage) {
-                case SlideshowManager.cannotStartMessage:
-                case SlideshowManager.slideshowStoppedMessage:
-                    updateButtonText(btnStartSlideshow, "Start Slideshow");
-                    break;
+            @Override
+            public void slidesChanged() {
+                Platform.runLater(() -> {
+                    updateFilmstrip();
+                    // Reloaded slides keep their index, their cells have to look at the playlist again.
+                    filmstrip.refresh();
+                });
+            }
 
-                case SlideshowManager.canStartMessage:
-                case SlideshowManager.slideshowStartedMessage:
-                    updateButtonText(btnStartSlideshow, "Stop Slideshow");
-                    break;
+            @Override
+            public void messageChanged(String message) {
+                Platform.runLater(() -> {
+                    switch (message) {
+                        case SlideshowManager.cannotStartMessage:
+                        case SlideshowManager.slideshowStoppedMessage:
+                            updateButtonText(btnStartSlideshow, "Start Slideshow");
+                            break;
+
+                        case SlideshowManager.canStartMessage:
+                        case SlideshowManager.slideshowStartedMessage:
+                            updateButtonText(btnStartSlideshow, "Stop Slideshow");
+                            break;
+                    }
+                });
             }
-            //Logger.getInstance().log(newMessage);
         });
 
         registerButtonEvents();
@@ -108,42 +208,188 @@ public class ImageViewerWindowController implements Initializable {
                 else
                     stopSlideshow();
 
-                Logger.getInstance().log(Boolean.toString(slideShowManager.isSlideshowStarted()));
+                Logger.getInstance().debug("Slideshow started: %s", slideShowManager.isSlideshowStarted());
             }
         });
     }
 
     @FXML
     private void handleBtnLoadAction() {
+        // While importing the button cancels the import.
+        if (importTask != null) {
+            importTask.cancel();
+            return;
+        }
+
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Select image files");
         fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Images",
-                "*.png", "*.jpg", "*.gif", "*.tif", "*.bmp"));
+                ImageDecoder.supportedExtensions.stream().map(extension -> "*." + extension).collect(Collectors.toList())));
         List<File> files = fileChooser.showOpenMultipleDialog(new Stage());
 
-        if (files != null && !files.isEmpty()) {
-            files.forEach((File f) ->
-            {
-                slideShowManager.addSlide(f.getPath());
-            });
+        if (files != null && !files.isEmpty())
+            startImport(SlideImporter.getInstance().importFiles(slideShowManager, files), false);
+    }
+
+    @FXML
+    private void handleBtnLoadFolderAction() {
+        // While importing the button cancels the import.
+        if (importTask != null) {
+            importTask.cancel();
+            return;
+        }
+
+        DirectoryChooser directoryChooser = new DirectoryChooser();
+        directoryChooser.setTitle("Select an image folder");
+        File folder = directoryChooser.showDialog(new Stage());
+
+        if (folder != null)
+            startImport(SlideImporter.getInstance().importFolder(slideShowManager, folder.toPath(), recursiveCheckBox.isSelected()), true);
+    }
+
+    @FXML
+    private void handleBtnOpenPlaylistAction() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Open a playlist");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Playlists", "*." + PlaylistFile.fileExtension));
+        File file = fileChooser.showOpenDialog(new Stage());
+        if (file == null) return;
+
+        // The slides being imported would end up in the opened playlist.
+        if (importTask != null) importTask.cancel();
+
+        if (openPlaylist(file.toPath())) {
+            updateFilmstrip();
+            filmstrip.refresh();
+            followCurrentSlide();
+        }
+    }
+
+    /**
+     * Restore a window of the last session: its slides, current slide, slideshow delay and whether it was playing. The
+     * current slide is shown first, the filmstrip is only filled once it's on screen.
+     *
+     * @param savedInstance The saved window.
+     */
+    public void restoreSession(SessionStore.SavedInstance savedInstance) {
+        if (!openPlaylist(savedInstance.getPlaylistFile())) return;
+
+        if (savedInstance.isPlaying()) startSlideshow();
+        StartupTimer.getInstance().runAfterFirstPaint(() -> {
+            updateFilmstrip();
+            followCurrentSlide();
+        });
+    }
+
+    private boolean openPlaylist(Path file) {
+        try {
+            var playlistFile = slideShowManager.openPlaylist(file);
+            slideshowDelayTimeSlider.setValue(playlistFile.getSlideShowDelay());
             displayImage();
+            return true;
+        } catch (IOException e) {
+            Logger.getInstance().warn("Couldn't open the playlist %s: %s", file, e.getMessage());
+            return false;
+        }
+    }
+
+    @FXML
+    private void handleBtnSavePlaylistAction() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Save the playlist");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Playlists", "*." + PlaylistFile.fileExtension));
+        File file = fileChooser.showSaveDialog(new Stage());
+        if (file == null) return;
+
+        try {
+            slideShowManager.savePlaylist(file.toPath());
+        } catch (IOException e) {
+            Logger.getInstance().warn("Couldn't save the playlist %s: %s", file, e.getMessage());
         }
     }
 
+    /**
+     * Follow an import in the window.
+     *
+     * @param task     The running import.
+     * @param autoPlay Whether to start the slideshow as soon as the first slide is added.
+     */
+    private void startImport(SlideImportTask task, boolean autoPlay) {
+        importTask = task;
+        importProgressBar.progressProperty().bind(task.progressProperty());
+        importProgressBar.setVisible(true);
+        updateButtonText(btnLoad, "Cancel Import");
+        updateButtonText(btnLoadFolder, "Cancel Import");
+
+        // Show the first slide as soon as it's added instead of after the whole import.
+        var hadSlides = !slideShowManager.getSlides().isEmpty();
+        task.valueProperty().addListener((obs, oldVal, newVal) -> {
+            updateFilmstrip();
+            if (!hadSlides && (oldVal == null || oldVal == 0) && newVal != null && newVal > 0) {
+                displayImage();
+                if (autoPlay) startSlideshow();
+            }
+        });
+
+        task.stateProperty().addListener((obs, oldState, newState) -> {
+            if (task.isDone()) {
+                if (task.getException() != null)
+                    Logger.getInstance().warn("Import failed: %s", task.getException());
+                importProgressBar.progressProperty().unbind();
+                importProgressBar.setVisible(false);
+                updateFilmstrip();
+                updateButtonText(btnLoad, "Add Image");
+                updateButtonText(btnLoadFolder, "Add Folder");
+                importTask = null;
+            }
+        });
+    }
+
     @FXML
     private void handleBtnPreviousAction() {
-        slideShowManager.previous();
+        displaySlide(slideShowManager.previous());
     }
 
     @FXML
     private void handleBtnNextAction() {
-        slideShowManager.next();
+        displaySlide(slideShowManager.next());
+    }
+
+    private void updateViewportSize() {
+        var scale = 1.0;
+        if (imageContainer.getScene() != null && imageContainer.getScene().getWindow() != null)
+            scale = imageContainer.getScene().getWindow().getOutputScaleX();
+
+        slideShowManager.setViewportSize(imageContainer.getWidth() * scale, imageContainer.getHeight() * scale);
+    }
+
+    /**
+     * Let the tiled image view zoom into the slide that is shown. Re-decodes of the same slide (after a resize) keep the
+     * zoom, another slide or a changed file resets it.
+     */
+    private void updateTilePyramid() {
+        var slide = slideShowManager.getCurrentSlide();
+        if (slide == null || slide.getSourceWidth() <= 0 || slide.getSourceHeight() <= 0) {
+            tiledImageView.setPyramid(null);
+            return;
+        }
+
+        var pyramid = tiledImageView.getPyramid();
+        if (pyramid != null && pyramid.getFilePath().equals(slide.getFilePath()) && pyramid.getLastModified() == slide.getLastModified())
+            return;
+        tiledImageView.setPyramid(new TilePyramid(slide.getFilePath(), slide.getLastModified(),
+                (int) slide.getSourceWidth(), (int) slide.getSourceHeight()));
     }
 
     private void displayImage() {
-        var slide = slideShowManager.showSlide();
-        if (slide != null && slideshowInstance != null)
+        displaySlide(slideShowManager.showSlide());
+    }
+
+    private void displaySlide(Slide slide) {
+        if (slide == null) return;
+        if (slideshowInstance != null)
             slideshowInstance.getStage().setTitle(String.format("%s - %s", Main.getMainTitle(), slide.getFileName()));
+        followCurrentSlide();
     }
 
     @FXML
@@ -186,11 +432,11 @@ public class ImageViewerWindowController implements Initializable {
     }
 
 
-    public SlideshowInstance getSlideshowInstance() {
+    public WindowSlideshowInstance getSlideshowInstance() {
         return slideshowInstance;
     }
 
-    public void setSlideshowInstance(SlideshowInstance slideshowInstance) {
+    public void setSlideshowInstance(WindowSlideshowInstance slideshowInstance) {
         this.slideshowInstance = slideshowInstance;
     }
 